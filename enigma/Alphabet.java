@@ -1,27 +1,62 @@
 package enigma;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 /** An alphabet of encodable characters.  Provides a mapping from characters
  *  to and from indices into the alphabet.
  *  @author Adrian Kwan
  */
 class Alphabet {
-    /** The characters. */
-    private String _chars;
-    /** A new alphabet containing CHARS. The K-th character has index
-     *  K (numbering from 0). No character may bgoo
-     *  e duplicated. */
+    /** Number of distinct byte values. */
+    static final int BYTE_VALUES = 256;
+
+    /** The characters, as code points. */
+    private int[] _chars;
+    /** A new alphabet containing CHARS. The K-th character (code point)
+     *  has index K (numbering from 0). No character may be duplicated.
+     *  Characters outside the Basic Multilingual Plane, written as
+     *  surrogate pairs, count as single characters.  Indices are looked
+     *  up in a table indexed by character, unless the characters are
+     *  spread too thinly for one, in which case they are looked up in a
+     *  hash table. */
     Alphabet(String chars) {
-        Set<Character> s = new HashSet<Character>();
-        for (char ch: chars.toCharArray()) {
-            s.add(ch);
+        this._chars = chars.codePoints().toArray();
+        int min = Character.MAX_CODE_POINT, max = 0;
+        for (int ch : _chars) {
+            min = Math.min(min, ch);
+            max = Math.max(max, ch);
+        }
+        _basic = max <= Character.MAX_VALUE;
+        _byteValues = _chars.length == BYTE_VALUES;
+        for (int k = 0; _byteValues && k < _chars.length; k += 1) {
+            _byteValues = _chars[k] == k;
         }
-        if (s.size() != chars.length()) {
-            throw new EnigmaException("Duplicates in Alphabet!");
+        int span = Math.max(0, max - min + 1);
+        if (span <= Math.max(DENSE_SPAN, DENSE_FACTOR * _chars.length)) {
+            _base = min;
+            _index = new int[span];
+            Arrays.fill(_index, -1);
+            for (int k = 0; k < _chars.length; k += 1) {
+                int i = _chars[k] - _base;
+                if (_index[i] != -1) {
+                    throw new EnigmaException("Duplicates in Alphabet!");
+                }
+                _index[i] = k;
+            }
         } else {
-            this._chars = chars;
+            int capacity = Integer.highestOneBit(_chars.length) * 4;
+            _shift = Integer.SIZE - Integer.numberOfTrailingZeros(capacity);
+            _keys = new int[capacity];
+            _index = new int[capacity];
+            Arrays.fill(_keys, -1);
+            for (int k = 0; k < _chars.length; k += 1) {
+                int i = slot(_chars[k]);
+                if (_keys[i] != -1) {
+                    throw new EnigmaException("Duplicates in Alphabet!");
+                }
+                _keys[i] = _chars[k];
+                _index[i] = k;
+            }
         }
     }
 
@@ -30,21 +65,82 @@ class Alphabet {
         this("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
     }
 
+    /** Return an alphabet of the BYTE_VALUES byte values, in which the
+     *  character with index K is (char) K, so that a machine over it can
+     *  convert bytes by value. */
+    static Alphabet bytes() {
+        char[] chars = new char[BYTE_VALUES];
+        for (int k = 0; k < BYTE_VALUES; k += 1) {
+            chars[k] = (char) k;
+        }
+        return new Alphabet(new String(chars));
+    }
+
     /** Returns the size of the alphabet. */
     int size() {
-        return _chars.length();
+        return _chars.length;
+    }
+
+    /** Returns true iff all my characters are in the Basic Multilingual
+     *  Plane, and so are single chars. */
+    boolean basic() {
+        return _basic;
+    }
+
+    /** Returns true iff I am the alphabet of byte values returned by
+     *  bytes(), whose configurations and settings are written in byte
+     *  notation (see ByteNotation). */
+    boolean byteValues() {
+        return _byteValues;
     }
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        return !(_chars.indexOf(ch) == -1);
+        return indexOf(ch) >= 0;
+    }
+
+    /** Returns true if the character with code point CH is in this
+     *  alphabet. */
+    boolean contains(int ch) {
+        return indexOf(ch) >= 0;
+    }
+
+    /** Returns the index of the character with code point CH in this
+     *  alphabet, or -1 if it is not in it.  Takes constant time. */
+    int indexOf(int ch) {
+        if (_keys == null) {
+            int i = ch - _base;
+            return i >= 0 && i < _index.length ? _index[i] : -1;
+        }
+        int i = slot(ch);
+        return _keys[i] == ch ? _index[i] : -1;
+    }
+
+    /** Return the slot of the hash table in which CH is or belongs. */
+    private int slot(int ch) {
+        int i = (ch * HASH_MULTIPLIER) >>> _shift;
+        while (_keys[i] != -1 && _keys[i] != ch) {
+            i = (i + 1) & (_keys.length - 1);
+        }
+        return i;
     }
 
     /** Returns character number INDEX in the alphabet, where
-     *  0 <= INDEX < size(). */
+     *  0 <= INDEX < size().  The character must be in the Basic
+     *  Multilingual Plane. */
     char toChar(int index) {
+        int ch = codePoint(index);
+        if (ch > Character.MAX_VALUE) {
+            throw new EnigmaException("Character is not a single char!");
+        }
+        return (char) ch;
+    }
+
+    /** Returns the code point of character number INDEX in the alphabet,
+     *  where 0 <= INDEX < size(). */
+    int codePoint(int index) {
         if (index < size() && index >= 0) {
-            return _chars.charAt(index);
+            return _chars[index];
         } else {
             throw new EnigmaException("Index Out Of Range for Given Alphabet!");
         }
@@ -53,11 +149,50 @@ class Alphabet {
     /** Returns the index of character CH which must be in
      *  the alphabet. This is the inverse of toChar(). */
     int toInt(char ch) {
-        if (contains(ch)) {
-            return _chars.indexOf(ch);
+        return toInt((int) ch);
+    }
+
+    /** Returns the index of the character with code point CH, which must
+     *  be in the alphabet. This is the inverse of codePoint(). */
+    int toInt(int ch) {
+        int index = indexOf(ch);
+        if (index >= 0) {
+            return index;
         } else {
             throw new EnigmaException("Character is not in Alphabet!");
         }
     }
 
+    /** Largest span of characters that is always looked up in a dense
+     *  table. */
+    private static final int DENSE_SPAN = 1 << 12;
+
+    /** Largest ratio of span to size for which the lookup table is
+     *  dense. */
+    private static final int DENSE_FACTOR = 4;
+
+    /** Multiplier (2^32 divided by the golden ratio) spreading characters
+     *  across the hash table. */
+    private static final int HASH_MULTIPLIER = 0x9e3779b9;
+
+    /** True iff all my characters are single chars. */
+    private boolean _basic;
+
+    /** True iff my characters are the byte values, in order. */
+    private boolean _byteValues;
+
+    /** The smallest character, for a dense table. */
+    private int _base;
+
+    /** The index of each character: at CH - _base in a dense table, or
+     *  in the slot holding CH in _keys otherwise. */
+    private int[] _index;
+
+    /** The characters in each slot of the hash table (-1 for an empty
+     *  slot), or null for a dense table. */
+    private int[] _keys;
+
+    /** Shift reducing a hash to a slot number. */
+    private int _shift;
+
 }
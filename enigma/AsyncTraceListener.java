@@ -0,0 +1,118 @@
+package enigma;
+
+import java.util.concurrent.locks.LockSupport;
+
+/** A trace listener that copies each trace into a preallocated ring
+ *  buffer and returns at once, leaving a background thread to pass the
+ *  traces on, in order, to another listener.  The tracing machine waits
+ *  only when the buffer is full.  Traces must come from one thread at a
+ *  time, and close() must be called to deliver the last of them.
+ *  @author Adrian Kwan
+ */
+class AsyncTraceListener implements TraceListener, AutoCloseable {
+
+    /** A listener that buffers up to CAPACITY traces of machine M and
+     *  delivers them to SINK. */
+    AsyncTraceListener(Machine M, TraceListener sink, int capacity) {
+        _sink = sink;
+        _capacity = capacity;
+        _settingsLength = M.numRotors() - 1;
+        _pathLength = M.tracePathLength();
+        _recordLength = _settingsLength + _pathLength;
+        _ring = new int[capacity * _recordLength];
+        _drainer = new Thread(this::drain, "enigma-trace");
+        _drainer.setDaemon(true);
+        _drainer.start();
+    }
+
+    @Override
+    public void trace(int[] settings, int[] path) {
+        long tail = _tail;
+        while (tail - _head == _capacity) {
+            LockSupport.unpark(_drainer);
+            Thread.yield();
+        }
+        int base = (int) (tail % _capacity) * _recordLength;
+        System.arraycopy(settings, 0, _ring, base, _settingsLength);
+        System.arraycopy(path, 0, _ring, base + _settingsLength,
+                         _pathLength);
+        _tail = tail + 1;
+    }
+
+    /** Deliver all buffered traces, flush the sink, and stop the
+     *  background thread. */
+    @Override
+    public void close() {
+        _closed = true;
+        LockSupport.unpark(_drainer);
+        boolean interrupted = false;
+        while (_drainer.isAlive()) {
+            try {
+                _drainer.join();
+            } catch (InterruptedException excp) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Pass buffered traces to the sink until closed. */
+    private void drain() {
+        int[] settings = new int[_settingsLength];
+        int[] path = new int[_pathLength];
+        while (true) {
+            long head = _head;
+            if (head < _tail) {
+                int base = (int) (head % _capacity) * _recordLength;
+                System.arraycopy(_ring, base, settings, 0, _settingsLength);
+                System.arraycopy(_ring, base + _settingsLength, path, 0,
+                                 _pathLength);
+                _head = head + 1;
+                _sink.trace(settings, path);
+            } else {
+                _sink.flush();
+                if (_closed && head == _tail) {
+                    return;
+                }
+                LockSupport.parkNanos(WAIT);
+            }
+        }
+    }
+
+    /** Nanoseconds the background thread sleeps when it finds no
+     *  traces. */
+    private static final long WAIT = 1000000;
+
+    /** Destination of the traces. */
+    private final TraceListener _sink;
+
+    /** Number of traces the ring can hold. */
+    private final int _capacity;
+
+    /** Length of the settings of a trace. */
+    private final int _settingsLength;
+
+    /** Length of the path of a trace. */
+    private final int _pathLength;
+
+    /** Length of a trace in _ring: its settings, then its path. */
+    private final int _recordLength;
+
+    /** Traces not yet delivered, trace number K being at
+     *  (K % _capacity) * _recordLength. */
+    private final int[] _ring;
+
+    /** Number of traces delivered, written only by _drainer. */
+    private volatile long _head;
+
+    /** Number of traces received, written only by the traced thread. */
+    private volatile long _tail;
+
+    /** True once close() has been called. */
+    private volatile boolean _closed;
+
+    /** Thread delivering traces to _sink. */
+    private final Thread _drainer;
+}
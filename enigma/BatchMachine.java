@@ -0,0 +1,295 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** Converts many independent messages at once, all with the rotors, ring
+ *  settings and plugboard of one machine but each starting from its own
+ *  rotor settings, as is usual for traffic sent under one daily key.
+ *  Within a message each character depends on the rotor state left by
+ *  the one before, but different messages do not depend on each other,
+ *  so messages are run in lockstep in groups of LANES.  Each step of a
+ *  group is carried out one layer (plugboard, rotor, or compiled table)
+ *  at a time across all its lanes, whose rotor offsets are kept in
+ *  arrays indexed by lane, so that the table lookups for different
+ *  lanes are independent and overlap in the processor instead of
+ *  waiting on each other.  Messages are grouped by length so that few
+ *  lanes sit idle.  Alphabets with characters outside the Basic
+ *  Multilingual Plane are converted one message at a time.  A batch
+ *  converter keeps working buffers, so is used by one thread at a time.
+ *  @author Adrian Kwan
+ */
+class BatchMachine {
+
+    /** Number of messages converted together. */
+    static final int LANES = 32;
+
+    /** A batch converter using the rotors, ring settings, plugboard and
+     *  compilation that MACHINE has now.  Later changes to MACHINE do
+     *  not affect me. */
+    BatchMachine(Machine machine) {
+        _machine = machine.copy();
+        _alphabet = machine.alphabet();
+        _size = _alphabet.size();
+        _numRotors = machine.numRotors();
+        _first = _numRotors - machine.numPawls();
+        _odometer = _machine.odometer();
+        _table = _machine.compiledTable();
+        _plugboard = new int[_size];
+        for (int c = 0; c < _size; c += 1) {
+            _plugboard[c] = machine.plugboard().permute(c);
+        }
+        Rotor[] rotors = machine.getRotors();
+        _forward = new int[_numRotors][];
+        _backward = new int[_numRotors][];
+        _rings = new int[_numRotors];
+        _offsets = new int[_numRotors][LANES];
+        for (int k = 0; k < _numRotors; k += 1) {
+            _forward[k] = rotors[k].forwardTable();
+            _backward[k] = rotors[k].backwardTable();
+            _rings[k] = machine.ring(k);
+        }
+    }
+
+    /** Return the conversions of MESSAGES, where MESSAGES[i] is converted
+     *  as by Machine.convert(String) starting from the rotor settings
+     *  SETTINGS[i], in the form accepted by Machine.setRotors but giving
+     *  every rotor (other than the reflector). */
+    String[] convert(String[] settings, String[] messages) {
+        if (settings.length != messages.length) {
+            throw error("%d settings for %d messages", settings.length,
+                        messages.length);
+        }
+        String[] result = new String[messages.length];
+        if (!_alphabet.basic()) {
+            for (int i = 0; i < messages.length; i += 1) {
+                result[i] = convertOne(settings[i], messages[i]);
+            }
+            return result;
+        }
+        long[] order = new long[messages.length];
+        for (int i = 0; i < order.length; i += 1) {
+            order[i] = ((long) -length(messages[i]) << Integer.SIZE) | i;
+        }
+        Arrays.sort(order);
+        int[] group = new int[LANES];
+        int n = 0;
+        for (long key : order) {
+            int i = (int) key;
+            int[] posns = settings(settings[i]);
+            if (!sameTable(posns)) {
+                result[i] = convertOne(settings[i], messages[i]);
+                continue;
+            }
+            group[n] = i;
+            _posns[n] = posns;
+            n += 1;
+            if (n == LANES) {
+                convertGroup(group, n, messages, result);
+                n = 0;
+            }
+        }
+        convertGroup(group, n, messages, result);
+        return result;
+    }
+
+    /** Return the number of characters of MSG in my alphabet, which is
+     *  the length of its conversion. */
+    private int length(String msg) {
+        int n = 0;
+        for (int i = 0; i < msg.length(); i += 1) {
+            if (_alphabet.indexOf(msg.charAt(i)) >= 0) {
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Convert the N messages MESSAGES[GROUP[0 .. N-1]], which must be
+     *  in order of decreasing length (counting only characters in my
+     *  alphabet), from the settings in _posns, putting the results in
+     *  the same places of RESULT. */
+    private void convertGroup(int[] group, int n, String[] messages,
+                              String[] result) {
+        int[] lens = new int[n];
+        for (int l = 0; l < n; l += 1) {
+            _text[l] = indices(messages[group[l]], l);
+            lens[l] = _lengths[l];
+            _states[l] = _machine.stateIndex(_posns[l]);
+        }
+        int active = n;
+        for (int t = 0; active > 0; t += 1) {
+            while (active > 0 && lens[active - 1] <= t) {
+                active -= 1;
+            }
+            if (_table != null) {
+                for (int l = 0; l < active; l += 1) {
+                    _states[l] = _odometer.step(_posns[l], _states[l]);
+                    _text[l][t] = _table.convert(_states[l], _text[l][t]);
+                }
+                continue;
+            }
+            for (int l = 0; l < active; l += 1) {
+                _odometer.step(_posns[l]);
+                _signal[l] = _text[l][t];
+            }
+            passRotors(active);
+            for (int l = 0; l < active; l += 1) {
+                _text[l][t] = _signal[l];
+            }
+        }
+        for (int l = 0; l < n; l += 1) {
+            char[] out = new char[lens[l]];
+            for (int t = 0; t < lens[l]; t += 1) {
+                out[t] = _alphabet.toChar(_text[l][t]);
+            }
+            result[group[l]] = new String(out);
+        }
+    }
+
+    /** Pass the signals of the first ACTIVE lanes through the plugboard,
+     *  the rotors and back, at the lanes' current rotor settings. */
+    private void passRotors(int active) {
+        for (int l = 0; l < active; l += 1) {
+            _signal[l] = _plugboard[_signal[l]];
+        }
+        for (int k = _numRotors - 1; k >= 0; k -= 1) {
+            int[] table = _forward[k];
+            for (int l = 0; l < active; l += 1) {
+                _offsets[k][l] = offset(_posns[l][k], _rings[k]);
+                _signal[l] = table[_offsets[k][l] + _signal[l]];
+            }
+        }
+        for (int k = 1; k < _numRotors; k += 1) {
+            int[] table = _backward[k];
+            for (int l = 0; l < active; l += 1) {
+                _signal[l] = table[_offsets[k][l] + _signal[l]];
+            }
+        }
+        for (int l = 0; l < active; l += 1) {
+            _signal[l] = _plugboard[_signal[l]];
+        }
+    }
+
+    /** Return the index in Rotor.forwardTable() of the substitutions of
+     *  a rotor at POSN with ring setting RING. */
+    private int offset(int posn, int ring) {
+        int d = posn - ring;
+        return (d < 0 ? d + _size : d) * _size;
+    }
+
+    /** Return the indices of the characters of MSG that are in my
+     *  alphabet, in lane L's text buffer (grown as needed), setting
+     *  _lengths[L] to their number. */
+    private int[] indices(String msg, int l) {
+        int[] text = _text[l];
+        if (text == null || text.length < msg.length()) {
+            text = new int[Math.max(msg.length(), MIN_TEXT)];
+        }
+        int n = 0;
+        for (int i = 0; i < msg.length(); i += 1) {
+            int c = _alphabet.indexOf(msg.charAt(i));
+            if (c >= 0) {
+                text[n] = c;
+                n += 1;
+            }
+        }
+        _lengths[l] = n;
+        return text;
+    }
+
+    /** Return the rotor settings, indexed by slot, written as SETTING. */
+    private int[] settings(String setting) {
+        if (setting.length() != _numRotors - 1) {
+            throw error("wrong number of settings in %s", setting);
+        }
+        int[] posns = new int[_numRotors];
+        for (int i = 1; i < _numRotors; i += 1) {
+            posns[i] = _alphabet.indexOf(setting.charAt(i - 1));
+            if (posns[i] < 0) {
+                throw error("setting %s not in alphabet", setting);
+            }
+        }
+        return posns;
+    }
+
+    /** Return true iff a machine whose rotors have settings POSNS
+     *  converts through the same table as mine: that is, if I have no
+     *  table or POSNS agrees with my settings outside the pawl slots. */
+    private boolean sameTable(int[] posns) {
+        if (_table == null) {
+            return true;
+        }
+        for (int i = 1; i < _first; i += 1) {
+            if (posns[i] != _machine.setting(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the conversion of MSG by a copy of my machine set to
+     *  SETTING. */
+    private String convertOne(String setting, String msg) {
+        Machine machine = _machine.copy();
+        machine.setRotors(setting);
+        return machine.convert(msg);
+    }
+
+    /** Smallest text buffer allocated for a lane. */
+    private static final int MIN_TEXT = 1 << 8;
+
+    /** My copy of the machine whose settings I use. */
+    private final Machine _machine;
+
+    /** Alphabet of _machine. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Slot of the leftmost pawl rotor. */
+    private final int _first;
+
+    /** Stepping rules of _machine's rotors. */
+    private final Odometer _odometer;
+
+    /** _machine's compiled table, or null. */
+    private final SubstitutionTable _table;
+
+    /** The plugboard, as the image of each character. */
+    private final int[] _plugboard;
+
+    /** Rotor.forwardTable() of the rotor in each slot. */
+    private final int[][] _forward;
+
+    /** Rotor.backwardTable() of the rotor in each slot. */
+    private final int[][] _backward;
+
+    /** Ring setting of each slot. */
+    private final int[] _rings;
+
+    /** Rotor settings of each lane, indexed by slot. */
+    private final int[][] _posns = new int[LANES][];
+
+    /** Number of the state of each lane's pawl rotors, as defined by
+     *  SubstitutionTable. */
+    private final int[] _states = new int[LANES];
+
+    /** Text of each lane, converted in place. */
+    private final int[][] _text = new int[LANES][];
+
+    /** Number of characters in each lane's text. */
+    private final int[] _lengths = new int[LANES];
+
+    /** The signal in each lane during a step. */
+    private final int[] _signal = new int[LANES];
+
+    /** _offsets[k][l] is the offset of the rotor in slot K of lane L into
+     *  its substitution tables during a step. */
+    private final int[][] _offsets;
+}
@@ -0,0 +1,126 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the BatchMachine class.
+ *  @author Adrian Kwan
+ */
+public class BatchMachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Number of messages in a batch, filling some groups of lanes and
+     *  leaving others partly empty. */
+    private static final int COUNT = BatchMachine.LANES * 2 + 3;
+
+    /** Text from which messages are drawn. */
+    private static final String TEXT =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+
+    /** Return COUNT messages of varied lengths, some with characters
+     *  outside the alphabet. */
+    private String[] messages() {
+        String[] msgs = new String[COUNT];
+        for (int i = 0; i < COUNT; i += 1) {
+            msgs[i] = TEXT.substring(0, (i * 7) % TEXT.length()) + " !"
+                + TEXT.substring(0, i % 5);
+        }
+        return msgs;
+    }
+
+    /** Return COUNT varied settings of a five-slot machine. */
+    private String[] settings() {
+        String[] settings = new String[COUNT];
+        for (int i = 0; i < COUNT; i += 1) {
+            settings[i] = "" + (char) ('A' + i % 2) + (char) ('A' + i % 26)
+                + (char) ('Z' - i % 26) + (char) ('A' + i * 3 % 26);
+        }
+        return settings;
+    }
+
+    /** Return a five-slot machine holding C Gamma I VIII VI with rings
+     *  ABCD and plugboard (AZ) (QT), compiled iff COMPILED. */
+    private Machine machine(boolean compiled) {
+        Machine mach =
+            navalMachine(3, "BRUH", "C", "Gamma", "I", "VIII", "VI");
+        mach.setRing("ABCD");
+        mach.setPlugboard(new Permutation("(AZ) (QT)", UPPER));
+        mach.setCompiled(compiled);
+        return mach;
+    }
+
+    /** Assert that RESULT holds the conversions of MSGS by copies of
+     *  MACH set to SETTINGS. */
+    private void checkBatch(Machine mach, String[] settings, String[] msgs,
+                            String[] result) {
+        assertEquals(msgs.length, result.length);
+        for (int i = 0; i < msgs.length; i += 1) {
+            Machine one = mach.copy();
+            one.setRotors(settings[i]);
+            assertEquals(one.convert(msgs[i]), result[i]);
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testConvert() {
+        Machine mach = machine(false);
+        String[] settings = settings(), msgs = messages();
+        checkBatch(mach, settings, msgs,
+                   new BatchMachine(mach).convert(settings, msgs));
+    }
+
+    @Test
+    public void testConvertCompiled() {
+        Machine mach = machine(true);
+        String[] settings = settings(), msgs = messages();
+        checkBatch(mach, settings, msgs,
+                   new BatchMachine(mach).convert(settings, msgs));
+    }
+
+    @Test
+    public void testLaterChanges() {
+        Machine mach = machine(false);
+        BatchMachine batch = new BatchMachine(mach);
+        Machine original = mach.copy();
+        mach.setRing("AAAA");
+        mach.setPlugboard(new Permutation("", UPPER));
+        String[] settings = settings(), msgs = messages();
+        checkBatch(original, settings, msgs, batch.convert(settings, msgs));
+    }
+
+    @Test
+    public void testPaddedMessages() {
+        Machine mach = machine(true);
+        String[] settings = settings(), msgs = new String[COUNT];
+        for (int i = 0; i < COUNT; i += 1) {
+            msgs[i] = TEXT.substring(0, i % TEXT.length())
+                + " .".repeat(COUNT - i);
+        }
+        checkBatch(mach, settings, msgs,
+                   new BatchMachine(mach).convert(settings, msgs));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMissingSettings() {
+        new BatchMachine(machine(false)).convert(new String[] { "AAAA" },
+                                                 messages());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testShortSetting() {
+        new BatchMachine(machine(false)).convert(new String[] { "AAA" },
+                                                 new String[] { TEXT });
+    }
+
+}
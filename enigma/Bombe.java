@@ -0,0 +1,438 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** A bombe in the manner of Turing and Welchman, recovering the rotor
+ *  positions and the plugboard of a message from a crib.
+ *
+ *  At each character of the crib, the plugboard images of the plaintext
+ *  and ciphertext characters are exchanged by the scrambler (the rotors
+ *  without the plugboard) in its state at that character.  These
+ *  relations form the menu.  For each rotor order and starting position,
+ *  the bombe assumes in turn each partner for the menu's most connected
+ *  character, and propagates that hypothesis through the menu and the
+ *  symmetry of the plugboard (the diagonal board) until some character
+ *  is found to need two different partners.  The pairs implied so far
+ *  are kept as one bitset per character, and propagation stops at the
+ *  first character given a second partner.  A position at which some
+ *  hypothesis survives is a stop, reported with the plugboard pairs it
+ *  implies.
+ *
+ *  Unlike an electromechanical bombe, the scrambler states take the full
+ *  stepping of the rotors into account, for given ring settings (by
+ *  default all 0).  Rotor orders and positions are divided among the
+ *  threads of a pool.
+ *  @author Adrian Kwan
+ */
+class Bombe {
+
+    /** A bombe for the rotors available to MACHINE, a machine with no
+     *  rotors inserted as read from a configuration.  Initially, the
+     *  ring settings are all 0, the crib is at offset 0, and at most
+     *  KeySearch.DEFAULT_LIMIT stops are reported. */
+    Bombe(Machine machine) {
+        _alphabet = machine.alphabet();
+        _size = _alphabet.size();
+        _words = (_size + Long.SIZE - 1) / Long.SIZE;
+        _numRotors = machine.numRotors();
+        _pawls = machine.numPawls();
+        _orders = KeySearch.rotorOrders(machine);
+        _rings = new int[_numRotors];
+        _limit = KeySearch.DEFAULT_LIMIT;
+        if ((long) _orders.size() * _size > Integer.MAX_VALUE) {
+            throw error("too many rotor orders");
+        }
+    }
+
+    /** Use the ring settings RINGS, in the form accepted by
+     *  Machine.setRing, in all candidates. */
+    void setRings(String rings) {
+        int[] chars = rings.codePoints().toArray();
+        if (chars.length != _numRotors - 1) {
+            throw error("wrong number of ring settings");
+        }
+        for (int i = 1; i < _numRotors; i += 1) {
+            if (!_alphabet.contains(chars[i - 1])) {
+                throw error("ring setting not in alphabet");
+            }
+            _rings[i] = _alphabet.toInt(chars[i - 1]);
+        }
+    }
+
+    /** Report at most LIMIT stops from each run. */
+    void setLimit(int limit) {
+        _limit = limit;
+    }
+
+    /** Look for the crib at OFFSET >= 0 characters into messages. */
+    void setOffset(long offset) {
+        _offset = offset;
+    }
+
+    /** Return the stops, as settings lines in the form accepted by Main,
+     *  of a run on the crib CRIB against the corresponding characters of
+     *  CIPHERTEXT, using the threads of POOL.  The plugboard of each stop
+     *  gives only the pairs the menu implies.  Whitespace is ignored.  At
+     *  most the limit set by setLimit are returned, in sorted order;
+     *  stops() gives the number found. */
+    List<String> run(String ciphertext, String crib, ForkJoinPool pool) {
+        int[] plain = KeySearch.indices(_alphabet, crib);
+        int[] cipher = KeySearch.indices(_alphabet, ciphertext);
+        if (plain.length == 0 || plain.length > cipher.length) {
+            throw error("crib must be non-empty and no longer than the "
+                        + "ciphertext");
+        }
+        buildMenu(plain, cipher);
+        _tested = new LongAdder();
+        _stops = new LongAdder();
+        _reported = new AtomicInteger();
+        _results = new ConcurrentLinkedQueue<>();
+        pool.invoke(new RangeTask(0, _orders.size() * _size,
+                                  this::bombeTask));
+        List<String> result = new ArrayList<>(_results);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Return the number of rotor positions tested by the last run. */
+    long tested() {
+        return _tested.sum();
+    }
+
+    /** Return the number of stops found by the last run. */
+    long stops() {
+        return _stops.sum();
+    }
+
+    /** Build the menu of the crib PLAIN against CIPHER: for each
+     *  character, the list of its links to other characters, each with
+     *  the index in the crib of the scrambler that relates them, and
+     *  choose the test character. */
+    private void buildMenu(int[] plain, int[] cipher) {
+        _cribLength = plain.length;
+        int[] degree = new int[_size];
+        for (int i = 0; i < _cribLength; i += 1) {
+            degree[plain[i]] += 1;
+            degree[cipher[i]] += 1;
+        }
+        _linkStart = new int[_size + 1];
+        _test = 0;
+        for (int a = 0; a < _size; a += 1) {
+            _linkStart[a + 1] = _linkStart[a] + degree[a];
+            if (degree[a] > degree[_test]) {
+                _test = a;
+            }
+        }
+        _linkOther = new int[2 * _cribLength];
+        _linkIndex = new int[2 * _cribLength];
+        int[] next = _linkStart.clone();
+        for (int i = 0; i < _cribLength; i += 1) {
+            addLink(next, plain[i], cipher[i], i);
+            addLink(next, cipher[i], plain[i], i);
+        }
+    }
+
+    /** Add a link from A to B through the scrambler at crib index I,
+     *  NEXT giving the next free place in the links of each character. */
+    private void addLink(int[] next, int a, int b, int i) {
+        _linkOther[next[a]] = b;
+        _linkIndex[next[a]] = i;
+        next[a] += 1;
+    }
+
+    /** Test all the starting positions of task T: those with a given
+     *  rotor order and position for the rotor in slot 1. */
+    private void bombeTask(int t) {
+        Rotor[] rotors = _orders.get(t / _size);
+        Odometer odometer = new Odometer(rotors, _pawls);
+        int[][] forward = new int[_numRotors][];
+        int[][] backward = new int[_numRotors][];
+        for (int k = 0; k < _numRotors; k += 1) {
+            forward[k] = rotors[k].forwardTable();
+            backward[k] = rotors[k].backwardTable();
+        }
+        Scramblers scramblers =
+            new Scramblers(forward, backward, _cribLength, _size);
+        int[] start = new int[_numRotors];
+        int[] posns = new int[_numRotors];
+        long[] rows = new long[_size * _words];
+        int[] queue = new int[2 * _size];
+        start[1] = t % _size;
+        long count = 0;
+        do {
+            System.arraycopy(start, 0, posns, 0, _numRotors);
+            odometer.advance(posns, _offset);
+            for (int i = 0; i < _cribLength; i += 1) {
+                odometer.step(posns);
+                scramblers.set(i, posns, _rings);
+            }
+            for (int x = 0; x < _size; x += 1) {
+                if (propagate(scramblers, x, rows, queue)) {
+                    record(rotors, start, rows);
+                    break;
+                }
+            }
+            count += 1;
+        } while (KeySearch.increment(start, _size));
+        _tested.add(count);
+    }
+
+    /** Propagate the hypothesis that X is the plugboard partner of the
+     *  test character through the menu with scramblers SCRAMBLERS,
+     *  recording the implied pairs in ROWS (bit B of row A meaning that A
+     *  and B are partners), using QUEUE for the pairs still to follow.
+     *  Return false as soon as a character needs two partners, and true
+     *  if the hypothesis is consistent with the whole menu. */
+    private boolean propagate(Scramblers scramblers, int x, long[] rows,
+                              int[] queue) {
+        Arrays.fill(rows, 0);
+        imply(rows, _test, x);
+        queue[0] = _test;
+        queue[1] = x;
+        int head = 0;
+        int tail = 2;
+        while (head < tail) {
+            int a = queue[head];
+            int b = queue[head + 1];
+            head += 2;
+            int implied = imply(rows, b, a);
+            if (implied == CONFLICT) {
+                return false;
+            } else if (implied == NEW) {
+                queue[tail] = b;
+                queue[tail + 1] = a;
+                tail += 2;
+            }
+            for (int k = _linkStart[a]; k < _linkStart[a + 1]; k += 1) {
+                int a2 = _linkOther[k];
+                int b2 = scramblers.convert(_linkIndex[k], b);
+                implied = imply(rows, a2, b2);
+                if (implied == CONFLICT) {
+                    return false;
+                } else if (implied == NEW) {
+                    queue[tail] = a2;
+                    queue[tail + 1] = b2;
+                    tail += 2;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Record in ROWS that A and B are partners.  Return NEW if that is
+     *  new, KNOWN if it was already recorded, and CONFLICT if A already
+     *  has a different partner. */
+    private int imply(long[] rows, int a, int b) {
+        int base = a * _words;
+        long bit = 1L << b;
+        int word = b >>> 6;
+        if ((rows[base + word] & bit) != 0) {
+            return KNOWN;
+        }
+        for (int w = 0; w < _words; w += 1) {
+            if (rows[base + w] != 0) {
+                return CONFLICT;
+            }
+        }
+        rows[base + word] = bit;
+        return NEW;
+    }
+
+    /** Note a stop with the rotors ROTORS at initial positions START,
+     *  with the implied pairs ROWS. */
+    private void record(Rotor[] rotors, int[] start, long[] rows) {
+        _stops.increment();
+        if (_reported.getAndIncrement() >= _limit) {
+            return;
+        }
+        StringBuilder line = new StringBuilder("*");
+        for (Rotor r : rotors) {
+            line.append(' ').append(r.name());
+        }
+        line.append(' ');
+        for (int i = 1; i < _numRotors; i += 1) {
+            line.appendCodePoint(_alphabet.codePoint(start[i]));
+        }
+        line.append(' ');
+        for (int i = 1; i < _numRotors; i += 1) {
+            line.appendCodePoint(_alphabet.codePoint(_rings[i]));
+        }
+        for (int a = 0; a < _size; a += 1) {
+            for (int b = a + 1; b < _size; b += 1) {
+                if ((rows[a * _words + (b >>> 6)] & (1L << b)) != 0) {
+                    line.append(" (").appendCodePoint(_alphabet.codePoint(a))
+                        .appendCodePoint(_alphabet.codePoint(b)).append(')');
+                }
+            }
+        }
+        _results.add(line.toString());
+    }
+
+    /** The scramblers of a rotor order at each character of a crib,
+     *  represented by the offset of each rotor's wiring. */
+    private static final class Scramblers {
+
+        /** Scramblers for rotors with substitution tables FORWARD and
+         *  BACKWARD (see Rotor.forwardTable) over an alphabet of SIZE
+         *  characters, for a crib of LENGTH characters. */
+        Scramblers(int[][] forward, int[][] backward, int length,
+                   int size) {
+            _forward = forward;
+            _backward = backward;
+            _size = size;
+            _offsets = new int[length * forward.length];
+        }
+
+        /** Set the scrambler at crib index I to that of the rotors at
+         *  positions POSNS with ring settings RINGS. */
+        void set(int i, int[] posns, int[] rings) {
+            int n = _forward.length;
+            for (int k = 0; k < n; k += 1) {
+                int d = posns[k] - rings[k];
+                if (d < 0) {
+                    d += _size;
+                }
+                _offsets[i * n + k] = d * _size;
+            }
+        }
+
+        /** Return the image of C under the scrambler at crib index I. */
+        int convert(int i, int c) {
+            int n = _forward.length;
+            int base = i * n;
+            for (int k = n - 1; k >= 0; k -= 1) {
+                c = _forward[k][_offsets[base + k] + c];
+            }
+            for (int k = 1; k < n; k += 1) {
+                c = _backward[k][_offsets[base + k] + c];
+            }
+            return c;
+        }
+
+        /** Forward substitution tables of the rotors, by slot. */
+        private final int[][] _forward;
+
+        /** Backward substitution tables of the rotors, by slot. */
+        private final int[][] _backward;
+
+        /** Size of the alphabet. */
+        private final int _size;
+
+        /** Table offset of the rotor in slot K at crib index I, at
+         *  I * (number of slots) + K. */
+        private final int[] _offsets;
+    }
+
+    /** Run a bombe on the configuration file named by the first of ARGS,
+     *  with the ciphertext given as the second and the crib as the
+     *  third, printing the stops, followed by the rate of testing on the
+     *  standard error.  Options --rings=RINGS, --offset=N and --limit=N
+     *  are as for setRings, setOffset and setLimit. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--rings=(.+) --offset=(\\d+) "
+                                + "--limit=(\\d+) --=(.*){3}", args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.Bombe [--rings=RINGS] "
+                            + "[--offset=N] [--limit=N] "
+                            + "CONFIG CIPHERTEXT CRIB");
+            }
+            List<String> files = options.get("--");
+            Bombe bombe = new Bombe(Main.configuration(files.get(0)));
+            if (options.contains("--rings")) {
+                bombe.setRings(options.getLast("--rings"));
+            }
+            if (options.contains("--offset")) {
+                bombe.setOffset(Long.parseLong(options.getLast("--offset")));
+            }
+            if (options.contains("--limit")) {
+                bombe.setLimit(Integer.parseInt(options.getLast("--limit")));
+            }
+            long start = System.nanoTime();
+            List<String> stops = bombe.run(files.get(1), files.get(2),
+                                           ForkJoinPool.commonPool());
+            double seconds = (System.nanoTime() - start) / 1e9;
+            for (String line : stops) {
+                System.out.println(line);
+            }
+            System.err.printf("Tested %d positions in %.2f s "
+                              + "(%.0f positions/s); %d stops.%n",
+                              bombe.tested(), seconds,
+                              bombe.tested() / seconds, bombe.stops());
+            return;
+        } catch (EnigmaException | NumberFormatException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Results of imply. */
+    private static final int NEW = 1, KNOWN = 0, CONFLICT = -1;
+
+    /** Alphabet of the configuration. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Number of longs in the bitset of a character's partners. */
+    private final int _words;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Number of pawls. */
+    private final int _pawls;
+
+    /** All choices of rotors for the slots. */
+    private final List<Rotor[]> _orders;
+
+    /** Ring settings of the rotors, by slot. */
+    private final int[] _rings;
+
+    /** Maximum number of stops reported. */
+    private int _limit;
+
+    /** Offset of the crib in the message. */
+    private long _offset;
+
+    /** Length of the crib of the current run. */
+    private int _cribLength;
+
+    /** Character whose partner is hypothesized. */
+    private int _test;
+
+    /** The links of character A are at indices _linkStart[A] to
+     *  _linkStart[A + 1] - 1 of _linkOther and _linkIndex. */
+    private int[] _linkStart;
+
+    /** The character at the other end of each link. */
+    private int[] _linkOther;
+
+    /** The crib index of the scrambler of each link. */
+    private int[] _linkIndex;
+
+    /** Positions tested by the current run. */
+    private LongAdder _tested;
+
+    /** Stops found by the current run. */
+    private LongAdder _stops;
+
+    /** Stops offered for reporting by the current run. */
+    private AtomicInteger _reported;
+
+    /** Stops reported by the current run. */
+    private ConcurrentLinkedQueue<String> _results;
+}
@@ -0,0 +1,65 @@
+package enigma;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author Adrian Kwan
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A crib whose menu has enough loops to leave few stops. */
+    private static final String CRIB = "WEATHERREPORTFORTODAY";
+
+    /** The plugboard of the encrypted cribs. */
+    private static final String PLUGBOARD = "(AQ) (ET) (RS) (WX)";
+
+    /** Return the encryption of CRIB with rings RING on a three-slot
+     *  machine holding C II I at AB, with plugboard PLUGBOARD. */
+    private String encrypt(String ring) {
+        Machine mach = navalMachine(2, "AB", "C", "II", "I");
+        mach.setRing(ring);
+        mach.setPlugboard(new Permutation(PLUGBOARD, UPPER));
+        return mach.convert(CRIB);
+    }
+
+    /** Return a bombe for all three-slot machines with the naval
+     *  rotors. */
+    private Bombe bombe() {
+        return new Bombe(new Machine(UPPER, 3, 2, navalRotors().values()));
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testStops() {
+        Bombe bombe = bombe();
+        List<String> stops =
+            bombe.run(encrypt("AA"), CRIB, ForkJoinPool.commonPool());
+        assertTrue(stops.contains("* C II I AB AA " + PLUGBOARD));
+        assertEquals(stops.size(), bombe.stops());
+        assertEquals(2L * 8 * 7 * 26 * 26, bombe.tested());
+    }
+
+    @Test
+    public void testRings() {
+        Bombe bombe = bombe();
+        bombe.setRings("AC");
+        List<String> stops =
+            bombe.run(encrypt("AC"), CRIB, ForkJoinPool.commonPool());
+        assertTrue(stops.contains("* C II I AB AC " + PLUGBOARD));
+    }
+
+}
@@ -0,0 +1,71 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** The notation used to describe rotors, settings and plugboards for
+ *  machines over the byte alphabet (see Alphabet.bytes()), in which each
+ *  byte is written as two hexadecimal digits.  Thus a notch or setting
+ *  string is written as "0a7f", and a permutation as "(00ff10)(2021)".
+ *  @author Adrian Kwan
+ */
+class ByteNotation {
+
+    /** Return the string of byte characters written in HEX. */
+    static String decode(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw error("odd number of hex digits in %s", hex);
+        }
+        char[] result = new char[hex.length() / 2];
+        for (int k = 0; k < result.length; k += 1) {
+            result[k] = (char) byteAt(hex, 2 * k);
+        }
+        return new String(result);
+    }
+
+    /** Return the permutation of ALPHABET, which must be the byte
+     *  alphabet, given in hexadecimal cycle notation by CYCLES.
+     *  Whitespace is ignored. */
+    static Permutation permutation(String cycles, Alphabet alphabet) {
+        int size = alphabet.size();
+        int[] mapping = new int[size];
+        boolean[] used = new boolean[size];
+        for (int k = 0; k < size; k += 1) {
+            mapping[k] = k;
+        }
+        String text = cycles.replaceAll("\\s", "");
+        int i = 0;
+        while (i < text.length()) {
+            if (text.charAt(i) != '(') {
+                throw error("bad cycle notation: %s", cycles);
+            }
+            int close = text.indexOf(')', i);
+            if (close < 0) {
+                throw error("unterminated cycle: %s", cycles);
+            }
+            String cycle = decode(text.substring(i + 1, close));
+            for (int k = 0; k < cycle.length(); k += 1) {
+                int from = cycle.charAt(k);
+                if (from >= size || used[from]) {
+                    throw error("bad or repeated byte in %s", cycles);
+                }
+                used[from] = true;
+                mapping[from] = cycle.charAt((k + 1) % cycle.length());
+            }
+            i = close + 1;
+        }
+        return new Permutation(mapping, alphabet);
+    }
+
+    /** Return the byte written at position K of HEX. */
+    private static int byteAt(String hex, int k) {
+        int hi = Character.digit(hex.charAt(k), HEX_RADIX);
+        int lo = Character.digit(hex.charAt(k + 1), HEX_RADIX);
+        if (hi < 0 || lo < 0) {
+            throw error("bad hex digits in %s", hex);
+        }
+        return hi * HEX_RADIX + lo;
+    }
+
+    /** Radix of the notation. */
+    private static final int HEX_RADIX = 16;
+}
@@ -0,0 +1,135 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** Compact binary snapshots of machine configurations.  A snapshot holds
+ *  what Main reads from a configuration file, already checked: the
+ *  alphabet, the numbers of slots and pawls, and for each rotor its
+ *  name, kind, notches and wiring (as the image of each index), so that
+ *  loading it requires no tokenizing and no parsing of cycles.  Main
+ *  accepts a snapshot wherever it accepts a configuration file.
+ *  @author Adrian Kwan
+ */
+class ConfigSnapshot {
+
+    /** Not instantiable. */
+    private ConfigSnapshot() {
+    }
+
+    /** Write a snapshot of the configuration of MACHINE, which was read
+     *  from a configuration in byte notation iff BINARY, to FILE. */
+    static void write(Machine machine, boolean binary, Path file)
+        throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(file)))) {
+            Alphabet alphabet = machine.alphabet();
+            int size = alphabet.size();
+            out.writeInt(MAGIC);
+            out.writeBoolean(binary);
+            out.writeInt(size);
+            for (int k = 0; k < size; k += 1) {
+                out.writeInt(alphabet.codePoint(k));
+            }
+            out.writeInt(machine.numRotors());
+            out.writeInt(machine.numPawls());
+            out.writeInt(machine.allRotors().size());
+            for (Rotor rotor : machine.allRotors()) {
+                out.writeUTF(rotor.name());
+                if (rotor.reflecting()) {
+                    out.writeByte(REFLECTOR);
+                } else if (rotor.rotates()) {
+                    out.writeByte(MOVING);
+                } else {
+                    out.writeByte(FIXED);
+                }
+                out.writeUTF(rotor.notches());
+                Permutation perm = rotor.permutation();
+                for (int k = 0; k < size; k += 1) {
+                    out.writeInt(perm.permute(k));
+                }
+            }
+        }
+    }
+
+    /** Return true iff FILE begins like a snapshot. */
+    static boolean isSnapshot(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return new DataInputStream(in).readInt() == MAGIC;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Return a machine, without rotors inserted, configured from the
+     *  snapshot in FILE, which must have been written from a
+     *  configuration in byte notation iff BINARY. */
+    static Machine read(Path file, boolean binary) throws IOException {
+        DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream(Files.readAllBytes(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw error("%s is not a configuration snapshot", file);
+            }
+            if (in.readBoolean() != binary) {
+                throw error(binary
+                            ? "snapshot is not of a binary configuration"
+                            : "snapshot is of a binary configuration");
+            }
+            int size = in.readInt();
+            if (size <= 0 || size > in.available() / Integer.BYTES) {
+                throw error("bad configuration snapshot %s", file);
+            }
+            StringBuilder chars = new StringBuilder();
+            for (int k = 0; k < size; k += 1) {
+                chars.appendCodePoint(in.readInt());
+            }
+            Alphabet alphabet = new Alphabet(chars.toString());
+            int numRotors = in.readInt();
+            int pawls = in.readInt();
+            int count = in.readInt();
+            if (count < 0 || count > in.available()) {
+                throw error("bad configuration snapshot %s", file);
+            }
+            List<Rotor> allRotors = new ArrayList<>(count);
+            int[] wiring = new int[alphabet.size()];
+            for (int i = 0; i < count; i += 1) {
+                String name = in.readUTF();
+                byte kind = in.readByte();
+                String notches = in.readUTF();
+                for (int k = 0; k < wiring.length; k += 1) {
+                    wiring[k] = in.readInt();
+                }
+                Permutation perm = new Permutation(wiring, alphabet);
+                if (kind == MOVING) {
+                    allRotors.add(new MovingRotor(name, perm, notches));
+                } else if (kind == REFLECTOR) {
+                    allRotors.add(new Reflector(name, perm));
+                } else {
+                    allRotors.add(new FixedRotor(name, perm));
+                }
+            }
+            return new Machine(alphabet, numRotors, pawls, allRotors);
+        } catch (EOFException excp) {
+            throw error("configuration snapshot %s truncated", file);
+        }
+    }
+
+    /** First word of a snapshot.  Its first byte is not text, so that
+     *  no configuration file is mistaken for a snapshot. */
+    private static final int MAGIC = 0x89456e43;
+
+    /** Kinds of rotor. */
+    private static final byte MOVING = 'M', FIXED = 'N', REFLECTOR = 'R';
+}
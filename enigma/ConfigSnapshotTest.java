@@ -0,0 +1,89 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the ConfigSnapshot class.
+ *  @author Adrian Kwan
+ */
+public class ConfigSnapshotTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The rotors in the slots of the machines tested. */
+    private static final String[] ROTORS = { "B", "Beta", "III", "IV", "I" };
+
+    /** A file for the snapshot of a test. */
+    private Path _file;
+
+    /** Create _file and write to it a snapshot of a five-slot machine
+     *  with the naval rotors. */
+    @Before
+    public void setUp() throws IOException {
+        _file = Files.createTempFile("config", ".snap");
+        ConfigSnapshot.write(navalMachine(3, "AXLE", ROTORS), false, _file);
+    }
+
+    /** Remove _file. */
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(_file);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRead() throws IOException {
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        assertTrue(ConfigSnapshot.isSnapshot(_file));
+        Machine mach = ConfigSnapshot.read(_file, false);
+        assertEquals(NAVALA.size(), mach.allRotors().size());
+        assertEquals(5, mach.numRotors());
+        assertEquals(3, mach.numPawls());
+        mach.insertRotors(ROTORS);
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("(AZ) (QT)", mach.alphabet()));
+        Machine expected = navalMachine(3, "AXLE", ROTORS);
+        expected.setPlugboard(new Permutation("(AZ) (QT)", UPPER));
+        assertEquals(expected.convert(msg), mach.convert(msg));
+    }
+
+    @Test
+    public void testConfigurationText() throws IOException {
+        Files.writeString(_file, "EnC1ABCDEFG\n 3 1\n");
+        assertFalse(ConfigSnapshot.isSnapshot(_file));
+        try {
+            ConfigSnapshot.read(_file, false);
+            fail("configuration text read as a snapshot");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBinaryMismatch() throws IOException {
+        ConfigSnapshot.read(_file, true);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTruncated() throws IOException {
+        byte[] data = Files.readAllBytes(_file);
+        Files.write(_file, Arrays.copyOf(data, data.length - 1));
+        ConfigSnapshot.read(_file, false);
+    }
+
+}
@@ -0,0 +1,54 @@
+package enigma;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/** An input stream that converts the bytes read from another stream with
+ *  an Enigma machine over the byte alphabet (see Alphabet.bytes()).
+ *  @author Adrian Kwan
+ */
+class EnigmaInputStream extends FilterInputStream {
+
+    /** A stream delivering the bytes of IN as converted by MACHINE, which
+     *  advances as they are read. */
+    EnigmaInputStream(InputStream in, Machine machine) {
+        super(in);
+        _machine = machine;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            return -1;
+        }
+        return _machine.convert(b);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            _machine.convert(ByteBuffer.wrap(b, off, n),
+                             ByteBuffer.wrap(b, off, n));
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        _machine.seek(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /** The converting machine. */
+    private final Machine _machine;
+}
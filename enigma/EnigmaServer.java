@@ -0,0 +1,210 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static enigma.EnigmaException.*;
+
+/** A long-running server that converts messages for any number of
+ *  clients at once.  Each connection is a session with its own copy of a
+ *  configured machine, run on a thread of its own, taken from a pool
+ *  that reuses the threads of finished sessions.  A client sends
+ *  text in the format of the input to Main (settings lines starting with
+ *  '*' and message lines) and receives the output Main would produce, as
+ *  soon as each piece of input has been converted.  An error in a
+ *  session is reported to its client as a line "Error: ...", giving the
+ *  message of an EnigmaException and only the kind of any other failure,
+ *  after which the connection is closed.  If the machine is compiled,
+ *  its sessions share its table cache (see TableCache), so that sessions
+ *  using the same key share one table rather than each building its
+ *  own.  A Unix domain socket is removed when the server is closed.
+ *  @author Adrian Kwan
+ */
+class EnigmaServer {
+
+    /** A server whose sessions use copies of MACHINE, encoding text with
+     *  CHARSET. */
+    EnigmaServer(Machine machine, Charset charset) {
+        _machine = machine;
+        _charset = charset;
+    }
+
+    /** Return the address denoted by NAME: a port number on the loopback
+     *  interface if NAME is all digits, and otherwise the path of a Unix
+     *  domain socket. */
+    static SocketAddress address(String name) {
+        try {
+            if (name.matches("\\d+")) {
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                             Integer.parseInt(name));
+            }
+            return UnixDomainSocketAddress.of(name);
+        } catch (IllegalArgumentException excp) {
+            throw error("bad server address: %s", name);
+        }
+    }
+
+    /** Start accepting connections at ADDRESS.  If ADDRESS is the path
+     *  of a Unix domain socket left behind by a server that is no longer
+     *  running, that socket is removed first; a socket at which a server
+     *  is still running is left alone, and the address is in use. */
+    void bind(SocketAddress address) throws IOException {
+        Path socketFile = null;
+        ProtocolFamily family = StandardProtocolFamily.INET;
+        if (address instanceof UnixDomainSocketAddress) {
+            socketFile = ((UnixDomainSocketAddress) address).getPath();
+            family = StandardProtocolFamily.UNIX;
+            removeStale(socketFile);
+        }
+        ServerSocketChannel server = ServerSocketChannel.open(family);
+        try {
+            if (family == StandardProtocolFamily.INET) {
+                server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            }
+            server.bind(address, BACKLOG);
+        } catch (IOException excp) {
+            server.close();
+            throw excp;
+        }
+        synchronized (this) {
+            _server = server;
+            _socketFile = socketFile;
+        }
+    }
+
+    /** Return the address at which I accept connections, once bound. */
+    SocketAddress localAddress() throws IOException {
+        return _server.getLocalAddress();
+    }
+
+    /** Accept connections at the address given to bind() and serve
+     *  them, until close() is called. */
+    void serve() throws IOException {
+        try {
+            while (true) {
+                SocketChannel client;
+                try {
+                    client = _server.accept();
+                } catch (ClosedChannelException excp) {
+                    return;
+                }
+                _sessions.execute(() -> session(client));
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /** Accept and serve connections at ADDRESS until close() is called
+     *  (see bind()). */
+    void serve(SocketAddress address) throws IOException {
+        bind(address);
+        serve();
+    }
+
+    /** Stop accepting connections and remove my Unix domain socket, if
+     *  any.  Sessions in progress run to completion. */
+    synchronized void close() throws IOException {
+        if (_server != null) {
+            _server.close();
+        }
+        _sessions.shutdown();
+        if (_socketFile != null) {
+            Files.deleteIfExists(_socketFile);
+            _socketFile = null;
+        }
+    }
+
+    /** Remove FILE if it is a Unix domain socket at which no server is
+     *  accepting connections. */
+    private static void removeStale(Path file) throws IOException {
+        if (!Files.exists(file) || Files.isRegularFile(file)
+            || Files.isDirectory(file)) {
+            return;
+        }
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(file)).close();
+        } catch (IOException excp) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Return a new daemon thread for a session, running TASK. */
+    private static Thread sessionThread(Runnable task) {
+        Thread thread = new Thread(task, "enigma-session");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /** Converting the input from CLIENT with a fresh copy of my machine,
+     *  send the results back to CLIENT, and close it. */
+    private void session(SocketChannel client) {
+        Machine machine = _machine.copy();
+        try (client) {
+            Reader input = Channels.newReader(client, _charset);
+            Writer output = Channels.newWriter(client, _charset);
+            MessageProcessor processor = new MessageProcessor(machine, output);
+            char[] buffer = new char[BUFFER_SIZE];
+            try {
+                for (int n = input.read(buffer); n != -1;
+                     n = input.read(buffer)) {
+                    processor.process(buffer, 0, n);
+                    processor.flush();
+                    output.flush();
+                }
+                processor.finish();
+            } catch (EnigmaException excp) {
+                processor.flush();
+                output.write(String.format("Error: %s%n", excp.getMessage()));
+            } catch (RuntimeException excp) {
+                processor.flush();
+                output.write(String.format("Error: internal error (%s)%n",
+                                           excp.getClass().getName()));
+            }
+            output.flush();
+        } catch (IOException excp) {
+            /* The client has gone away, leaving nothing more to do. */
+            return;
+        }
+    }
+
+    /** Number of characters of input read at a time in a session. */
+    static final int BUFFER_SIZE = 1 << 12;
+
+    /** Number of pending connections the server queues. */
+    static final int BACKLOG = 1 << 12;
+
+    /** Machine copied for each session. */
+    private final Machine _machine;
+
+    /** Encoding of the text exchanged with clients. */
+    private final Charset _charset;
+
+    /** Channel accepting connections, once bound. */
+    private volatile ServerSocketChannel _server;
+
+    /** Path of the Unix domain socket I am bound to, until it is removed,
+     *  or null. */
+    private Path _socketFile;
+
+    /** Threads running sessions. */
+    private final ExecutorService _sessions =
+        Executors.newCachedThreadPool(EnigmaServer::sessionThread);
+}
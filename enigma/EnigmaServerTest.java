@@ -0,0 +1,210 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the EnigmaServer class.
+ *  @author Adrian Kwan
+ */
+public class EnigmaServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A settings line for the five-slot naval machine. */
+    private static final String SETTINGS =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n";
+
+    /** Input to a session holding several settings lines and messages. */
+    private static final String INPUT = SETTINGS
+        + "FROM HIS SHOULDER HIAWATHA\n\n"
+        + "* C Gamma I VIII VI BRUH\n"
+        + "TOOK THE CAMERA OF ROSEWOOD\n"
+        + SETTINGS
+        + "QVPQS OKOIL PUBKJ ZPISF XDW\n";
+
+    /** Number of clients served at once by testConcurrentClients. */
+    private static final int CLIENTS = 20;
+
+    /** The server under test, serving on its own thread. */
+    private EnigmaServer _server;
+
+    /** Thread running _server. */
+    private Thread _serving;
+
+    /** Directory holding Unix domain sockets. */
+    private Path _dir;
+
+    /** Create _dir. */
+    @Before
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("enigma");
+    }
+
+    /** Stop _server, if started, and remove _dir. */
+    @After
+    public void tearDown() throws Exception {
+        if (_server != null) {
+            _server.close();
+            _serving.join();
+        }
+        Files.deleteIfExists(_dir.resolve("socket"));
+        Files.delete(_dir);
+    }
+
+    /** Return a five-slot machine with the naval rotors and no rotors
+     *  inserted. */
+    private Machine machine() {
+        return new Machine(UPPER, 5, 3, navalRotors().values());
+    }
+
+    /** Start _server at ADDRESS and return the address it accepts
+     *  connections at. */
+    private SocketAddress start(SocketAddress address) throws IOException {
+        _server = new EnigmaServer(machine(), StandardCharsets.UTF_8);
+        _server.bind(address);
+        _serving = new Thread(() -> {
+            try {
+                _server.serve();
+            } catch (IOException excp) {
+                throw new AssertionError(excp);
+            }
+        });
+        _serving.start();
+        return _server.localAddress();
+    }
+
+    /** Return all that a session at ADDRESS sends back for INPUT. */
+    private String session(SocketAddress address, String input)
+        throws IOException {
+        try (SocketChannel client = SocketChannel.open(address)) {
+            ByteBuffer request =
+                ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8));
+            while (request.hasRemaining()) {
+                client.write(request);
+            }
+            client.shutdownOutput();
+            StringBuilder reply = new StringBuilder();
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+            while (client.read(buffer) != -1) {
+                buffer.flip();
+                reply.append(StandardCharsets.UTF_8.decode(buffer));
+                buffer.clear();
+            }
+            return reply.toString();
+        }
+    }
+
+    /** Return the output of a MessageProcessor for INPUT, with FINISH
+     *  iff the input is complete. */
+    private String expected(String input, boolean finish) throws IOException {
+        StringWriter output = new StringWriter();
+        MessageProcessor direct = new MessageProcessor(machine(), output);
+        direct.process(input.toCharArray(), 0, input.length());
+        if (finish) {
+            direct.finish();
+        }
+        direct.flush();
+        return output.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSession() throws IOException {
+        SocketAddress address = start(EnigmaServer.address("0"));
+        assertEquals(expected(INPUT, true), session(address, INPUT));
+        assertEquals(expected(INPUT, true), session(address, INPUT));
+    }
+
+    @Test
+    public void testBadSettings() throws IOException {
+        SocketAddress address = start(EnigmaServer.address("0"));
+        String good = SETTINGS + "FROM HIS SHOULDER HIAWATHA\n";
+        String reply = session(address, good + "* B Beta III\nAAAAA\n");
+        assertEquals(expected(good, false)
+                     + "Error: Wrong Settings Config. Not Enough Arguments."
+                     + System.lineSeparator(), reply);
+    }
+
+    @Test
+    public void testConcurrentClients() throws Exception {
+        SocketAddress address = start(EnigmaServer.address("0"));
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Callable<String>> sessions = new ArrayList<>();
+            List<String> inputs = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i += 1) {
+                String input = "* C Gamma I VIII VI "
+                    + (char) ('A' + i) + "RUH\n" + INPUT;
+                inputs.add(input);
+                sessions.add(() -> session(address, input));
+            }
+            List<Future<String>> replies = clients.invokeAll(sessions);
+            for (int i = 0; i < CLIENTS; i += 1) {
+                assertEquals(expected(inputs.get(i), true),
+                             replies.get(i).get());
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    public void testStaleSocket() throws IOException {
+        Path socket = _dir.resolve("socket");
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+        ServerSocketChannel stale =
+            ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        stale.bind(address);
+        stale.close();
+        assertTrue(Files.exists(socket));
+        start(address);
+        assertEquals(expected(INPUT, true), session(address, INPUT));
+        _server.close();
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    public void testSocketInUse() throws IOException {
+        UnixDomainSocketAddress address =
+            UnixDomainSocketAddress.of(_dir.resolve("socket"));
+        start(address);
+        EnigmaServer other = new EnigmaServer(machine(),
+                                              StandardCharsets.UTF_8);
+        try {
+            other.bind(address);
+            fail("socket of a running server replaced");
+        } catch (IOException excp) {
+            /* Expected. */
+        }
+        assertEquals(expected(INPUT, true), session(address, INPUT));
+    }
+
+}
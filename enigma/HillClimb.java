@@ -0,0 +1,553 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only attack on an Enigma configuration.  It works in
+ *  three stages:
+ *
+ *  1. Every rotor order and starting position, with ring settings 0 and
+ *     no plugboard, is ranked by the index of coincidence of the text it
+ *     decrypts, keeping the best few candidates.
+ *  2. For each candidate, the ring settings of the rotors whose notches
+ *     take effect are varied, with their positions moved to match, again
+ *     maximizing the index of coincidence.
+ *  3. For each candidate, the plugboard is found by hill climbing: pairs
+ *     are added, removed and exchanged while that improves the n-gram
+ *     log-likelihood of the decryption.  Each climb is restarted from
+ *     several random plugboards.
+ *
+ *  Each stage is divided among the threads of a pool, each of which keeps
+ *  its own rotor settings and buffers.  Stage 1 tries (rotor orders) *
+ *  size**(slots - 1) starting positions, so is practical for machines of
+ *  about three moving rotors.  As stage 1 ignores the ring settings, the
+ *  turnovers it assumes are wrong by the ring setting of the fast rotor,
+ *  and the attack is most likely to succeed when that is small or the
+ *  message long.
+ *  @author Adrian Kwan
+ */
+class HillClimb {
+
+    /** An attack on messages in the configuration of MACHINE, a machine
+     *  with no rotors inserted as read from a configuration, scoring
+     *  plaintexts with MODEL, which must be over an alphabet of the same
+     *  size.  Initially, DEFAULT_CANDIDATES candidates are kept, with
+     *  DEFAULT_RESTARTS climbs of the plugboard each, and DEFAULT_LIMIT
+     *  solutions are reported. */
+    HillClimb(Machine machine, NgramModel model) {
+        _alphabet = machine.alphabet();
+        _size = _alphabet.size();
+        if (model.size() != _size) {
+            throw error("n-gram model does not match the alphabet");
+        }
+        _model = model;
+        _numRotors = machine.numRotors();
+        _first = _numRotors - machine.numPawls();
+        List<Rotor[]> orders = KeySearch.rotorOrders(machine);
+        if ((long) orders.size() * _size > Integer.MAX_VALUE) {
+            throw error("too many rotor orders");
+        }
+        _orders = orders.toArray(new Rotor[orders.size()][]);
+        _odometers = new Odometer[_orders.length];
+        _forward = new int[_orders.length][_numRotors][];
+        _backward = new int[_orders.length][_numRotors][];
+        for (int o = 0; o < _orders.length; o += 1) {
+            _odometers[o] = new Odometer(_orders[o], machine.numPawls());
+            for (int k = 0; k < _numRotors; k += 1) {
+                _forward[o][k] = _orders[o][k].forwardTable();
+                _backward[o][k] = _orders[o][k].backwardTable();
+            }
+        }
+        _candidates = DEFAULT_CANDIDATES;
+        _restarts = DEFAULT_RESTARTS;
+        _limit = DEFAULT_LIMIT;
+    }
+
+    /** Keep the best COUNT rotor orders and positions from stage 1. */
+    void setCandidates(int count) {
+        _candidates = count;
+    }
+
+    /** Climb the plugboard of each candidate RESTARTS times. */
+    void setRestarts(int restarts) {
+        _restarts = restarts;
+    }
+
+    /** Report at most LIMIT solutions. */
+    void setLimit(int limit) {
+        _limit = limit;
+    }
+
+    /** Seed the random plugboards of restarts with SEED. */
+    void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    /** Return the best solutions found for CIPHERTEXT (ignoring
+     *  whitespace), best first, using the threads of POOL. */
+    List<Solution> attack(String ciphertext, ForkJoinPool pool) {
+        _cipher = KeySearch.indices(_alphabet, ciphertext);
+        if (_cipher.length < _model.n()) {
+            throw error("ciphertext too short");
+        }
+        _best = new PriorityQueue<>(Comparator.comparingLong(c -> c._ioc));
+        pool.invoke(new RangeTask(0, _orders.length * _size,
+                                  this::rankPositions));
+        Candidate[] candidates = _best.toArray(new Candidate[0]);
+        pool.invoke(new RangeTask(0, candidates.length,
+                                  i -> climbRings(candidates[i])));
+        Solution[] climbs = new Solution[candidates.length * _restarts];
+        pool.invoke(new RangeTask(0, climbs.length, i -> {
+            climbs[i] = climbPlugboard(candidates[i / _restarts],
+                                       i % _restarts);
+        }));
+        Arrays.sort(climbs, Comparator.comparingDouble(Solution::score)
+                    .reversed());
+        Map<String, Solution> result = new LinkedHashMap<>();
+        for (Solution s : climbs) {
+            if (result.size() < _limit) {
+                result.putIfAbsent(s.settings(), s);
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /** Rank the starting positions of task T of stage 1: those with a
+     *  given rotor order and position for the rotor in slot 1. */
+    private void rankPositions(int t) {
+        int order = t / _size;
+        int[] start = new int[_numRotors];
+        int[] posns = new int[_numRotors];
+        int[] rings = new int[_numRotors];
+        int[] counts = new int[_size];
+        PriorityQueue<Candidate> best =
+            new PriorityQueue<>(Comparator.comparingLong(c -> c._ioc));
+        start[1] = t % _size;
+        do {
+            System.arraycopy(start, 0, posns, 0, _numRotors);
+            long ioc = coincidences(order, posns, rings, counts);
+            if (best.size() < _candidates || ioc > best.peek()._ioc) {
+                best.add(new Candidate(order, start.clone(), rings.clone(),
+                                       ioc));
+                if (best.size() > _candidates) {
+                    best.poll();
+                }
+            }
+        } while (KeySearch.increment(start, _size));
+        synchronized (_best) {
+            for (Candidate c : best) {
+                _best.add(c);
+                if (_best.size() > _candidates) {
+                    _best.poll();
+                }
+            }
+        }
+    }
+
+    /** Choose the ring settings of CANDIDATE's rotors in the two
+     *  rightmost pawl slots (those whose notches take effect) that
+     *  maximize the index of coincidence, moving their positions by the
+     *  same amount so that their wiring starts in the same place.  Then
+     *  tabulate the candidate's scramblers. */
+    private void climbRings(Candidate candidate) {
+        int fast = _numRotors - 1;
+        int middle = fast - 1 > _first ? fast - 1 : fast;
+        int[] posns = new int[_numRotors];
+        int[] start = candidate._start.clone();
+        int[] rings = candidate._rings.clone();
+        int[] counts = new int[_size];
+        int middleRings = middle == fast ? 1 : _size;
+        for (int m = 0; m < middleRings; m += 1) {
+            for (int f = 0; f < _size; f += 1) {
+                rings[fast] = f;
+                start[fast] = (candidate._start[fast] + f) % _size;
+                if (middle != fast) {
+                    rings[middle] = m;
+                    start[middle] = (candidate._start[middle] + m) % _size;
+                }
+                System.arraycopy(start, 0, posns, 0, _numRotors);
+                long ioc = coincidences(candidate._order, posns, rings,
+                                        counts);
+                if (ioc > candidate._ioc) {
+                    candidate._ioc = ioc;
+                    System.arraycopy(start, 0, candidate._posns, 0,
+                                     _numRotors);
+                    System.arraycopy(rings, 0, candidate._rings, 0,
+                                     _numRotors);
+                }
+            }
+        }
+        int[] scramblers = new int[_cipher.length * _size];
+        System.arraycopy(candidate._posns, 0, posns, 0, _numRotors);
+        for (int i = 0; i < _cipher.length; i += 1) {
+            _odometers[candidate._order].step(posns);
+            for (int c = 0; c < _size; c += 1) {
+                scramblers[i * _size + c] =
+                    scramble(candidate._order, posns, candidate._rings, c);
+            }
+        }
+        candidate._scramblers = scramblers;
+    }
+
+    /** Return the best solution found by climbing the plugboard of
+     *  CANDIDATE, starting from no plugboard if RESTART is 0, and
+     *  otherwise from a random one. */
+    private Solution climbPlugboard(Candidate candidate, int restart) {
+        int[] plug = new int[_size];
+        int[] trial = new int[_size];
+        int[] text = new int[_cipher.length];
+        for (int c = 0; c < _size; c += 1) {
+            plug[c] = c;
+        }
+        if (restart > 0) {
+            SplittableRandom random =
+                new SplittableRandom(_seed + 31L * restart
+                                     + 1009L * candidate._order
+                                     + Arrays.hashCode(candidate._start));
+            for (int k = 0; k < RANDOM_PAIRS; k += 1) {
+                pair(plug, random.nextInt(_size), random.nextInt(_size));
+            }
+        }
+        double score = score(candidate, plug, text);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int a = 0; a < _size; a += 1) {
+                for (int b = a + 1; b < _size; b += 1) {
+                    System.arraycopy(plug, 0, trial, 0, _size);
+                    if (trial[a] == b) {
+                        trial[a] = a;
+                        trial[b] = b;
+                    } else {
+                        pair(trial, a, b);
+                    }
+                    double s = score(candidate, trial, text);
+                    if (s > score) {
+                        score = s;
+                        int[] tmp = plug;
+                        plug = trial;
+                        trial = tmp;
+                        improved = true;
+                    }
+                }
+            }
+        }
+        return new Solution(settings(candidate, plug), score);
+    }
+
+    /** Make A and B partners in the plugboard PLUG, first freeing each
+     *  from any partner it has. */
+    private static void pair(int[] plug, int a, int b) {
+        plug[plug[a]] = plug[a];
+        plug[plug[b]] = plug[b];
+        plug[a] = b;
+        plug[b] = a;
+    }
+
+    /** Return the n-gram score of the decryption of the ciphertext with
+     *  CANDIDATE's scramblers and the plugboard PLUG, using TEXT to hold
+     *  the decryption. */
+    private double score(Candidate candidate, int[] plug, int[] text) {
+        int[] scramblers = candidate._scramblers;
+        for (int i = 0; i < _cipher.length; i += 1) {
+            text[i] = plug[scramblers[i * _size + plug[_cipher[i]]]];
+        }
+        return _model.score(text, text.length);
+    }
+
+    /** Return sum n(n-1) over the counts n of the characters of the
+     *  decryption of the ciphertext by rotor order ORDER, starting at
+     *  positions POSNS (which are changed) with ring settings RINGS and
+     *  no plugboard, using COUNTS for the counts. */
+    private long coincidences(int order, int[] posns, int[] rings,
+                              int[] counts) {
+        Arrays.fill(counts, 0);
+        Odometer odometer = _odometers[order];
+        for (int i = 0; i < _cipher.length; i += 1) {
+            odometer.step(posns);
+            counts[scramble(order, posns, rings, _cipher[i])] += 1;
+        }
+        long result = 0;
+        for (int n : counts) {
+            result += (long) n * (n - 1);
+        }
+        return result;
+    }
+
+    /** Return the image of C under the rotors of ORDER at positions
+     *  POSNS with ring settings RINGS. */
+    private int scramble(int order, int[] posns, int[] rings, int c) {
+        int[][] forward = _forward[order];
+        int[][] backward = _backward[order];
+        for (int k = _numRotors - 1; k >= 0; k -= 1) {
+            int d = posns[k] - rings[k];
+            if (d < 0) {
+                d += _size;
+            }
+            c = forward[k][d * _size + c];
+        }
+        for (int k = 1; k < _numRotors; k += 1) {
+            int d = posns[k] - rings[k];
+            if (d < 0) {
+                d += _size;
+            }
+            c = backward[k][d * _size + c];
+        }
+        return c;
+    }
+
+    /** Return the settings line, in the form accepted by Main, for
+     *  CANDIDATE with plugboard PLUG. */
+    private String settings(Candidate candidate, int[] plug) {
+        StringBuilder line = new StringBuilder("*");
+        for (Rotor r : _orders[candidate._order]) {
+            line.append(' ').append(r.name());
+        }
+        line.append(' ');
+        for (int i = 1; i < _numRotors; i += 1) {
+            line.appendCodePoint(_alphabet.codePoint(candidate._posns[i]));
+        }
+        line.append(' ');
+        for (int i = 1; i < _numRotors; i += 1) {
+            line.appendCodePoint(_alphabet.codePoint(candidate._rings[i]));
+        }
+        for (int a = 0; a < _size; a += 1) {
+            if (plug[a] > a) {
+                line.append(" (").appendCodePoint(_alphabet.codePoint(a))
+                    .appendCodePoint(_alphabet.codePoint(plug[a]))
+                    .append(')');
+            }
+        }
+        return line.toString();
+    }
+
+    /** A rotor order and starting position under consideration. */
+    private static final class Candidate {
+
+        /** A candidate with rotor order number ORDER, starting positions
+         *  START and ring settings RINGS, whose decryption has sum
+         *  n(n-1) IOC over its character counts n. */
+        Candidate(int order, int[] start, int[] rings, long ioc) {
+            _order = order;
+            _start = start;
+            _posns = start.clone();
+            _rings = rings;
+            _ioc = ioc;
+        }
+
+        /** Number of the rotor order. */
+        private final int _order;
+
+        /** Starting positions found by stage 1. */
+        private final int[] _start;
+
+        /** Best starting positions found so far. */
+        private final int[] _posns;
+
+        /** Best ring settings found so far. */
+        private final int[] _rings;
+
+        /** Index of coincidence (unnormalized) of the best settings. */
+        private long _ioc;
+
+        /** The scrambler at ciphertext index I maps C to
+         *  _scramblers[I * size + C]. */
+        private int[] _scramblers;
+    }
+
+    /** A proposed key for a ciphertext. */
+    static final class Solution {
+
+        /** A solution with the settings line SETTINGS, scoring SCORE. */
+        Solution(String settings, double score) {
+            _settings = settings;
+            _score = score;
+        }
+
+        /** Return my settings line, in the form accepted by Main. */
+        String settings() {
+            return _settings;
+        }
+
+        /** Return the n-gram log-likelihood of my decryption. */
+        double score() {
+            return _score;
+        }
+
+        /** My settings line. */
+        private final String _settings;
+
+        /** My score. */
+        private final double _score;
+    }
+
+    /** Attack the ciphertext in the file named by the second of ARGS, for
+     *  the configuration file named by the first, printing the best
+     *  solutions with their scores and then the decryption by the best.
+     *  The n-gram model is either mapped from the file given by
+     *  --model=FILE, or trained on the text in the file given by
+     *  --corpus=FILE with n-grams of length --n=N (default 3), and then
+     *  saved to the file given by --save=FILE, if present.  Options
+     *  --candidates=N, --restarts=N and --limit=N are as for
+     *  setCandidates, setRestarts and setLimit. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--model=(.+) --corpus=(.+) --n=(\\d+) "
+                                + "--save=(.+) --candidates=(\\d+) "
+                                + "--restarts=(\\d+) --limit=(\\d+) "
+                                + "--=(.*){2}", args);
+            if (!options.ok()
+                || options.contains("--model") == options.contains("--corpus")
+                || options.contains("--model")
+                   && (options.contains("--n") || options.contains("--save"))) {
+                throw error("Usage: java enigma.HillClimb "
+                            + "(--model=FILE | --corpus=FILE [--n=N] "
+                            + "[--save=FILE]) [--candidates=N] "
+                            + "[--restarts=N] [--limit=N] CONFIG "
+                            + "CIPHERTEXT");
+            }
+            List<String> files = options.get("--");
+            Machine machine = Main.configuration(files.get(0));
+            NgramModel model = model(options, machine.alphabet());
+            HillClimb attack = new HillClimb(machine, model);
+            if (options.contains("--candidates")) {
+                attack.setCandidates(
+                    Integer.parseInt(options.getLast("--candidates")));
+            }
+            if (options.contains("--restarts")) {
+                attack.setRestarts(
+                    Integer.parseInt(options.getLast("--restarts")));
+            }
+            if (options.contains("--limit")) {
+                attack.setLimit(Integer.parseInt(options.getLast("--limit")));
+            }
+            String ciphertext = read(files.get(1));
+            List<Solution> solutions =
+                attack.attack(ciphertext, ForkJoinPool.commonPool());
+            for (Solution s : solutions) {
+                System.out.printf("%.1f %s%n", s.score(), s.settings());
+            }
+            if (!solutions.isEmpty()) {
+                Machine best = machine.copy();
+                Main.setUp(best, solutions.get(0).settings());
+                System.out.println(best.convert(
+                    ciphertext.replaceAll("\\s", "")));
+            }
+            return;
+        } catch (EnigmaException | NumberFormatException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the n-gram model over ALPHABET described by OPTIONS (see
+     *  main). */
+    private static NgramModel model(CommandArgs options, Alphabet alphabet) {
+        try {
+            if (options.contains("--model")) {
+                return NgramModel.map(Paths.get(options.getLast("--model")));
+            }
+            int n = options.contains("--n")
+                ? Integer.parseInt(options.getLast("--n")) : DEFAULT_N;
+            NgramModel result;
+            try (Reader corpus =
+                 Files.newBufferedReader(Paths.get(options.getLast("--corpus")),
+                                         Charset.defaultCharset())) {
+                result = NgramModel.train(corpus, alphabet, n);
+            }
+            if (options.contains("--save")) {
+                result.save(Paths.get(options.getLast("--save")));
+            }
+            return result;
+        } catch (IOException excp) {
+            throw error("could not read n-gram model: %s", excp.getMessage());
+        }
+    }
+
+    /** Return the contents of the file named NAME. */
+    private static String read(String name) {
+        try {
+            return Files.readString(Path.of(name), Charset.defaultCharset());
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Default number of candidates kept from stage 1. */
+    static final int DEFAULT_CANDIDATES = 50;
+
+    /** Default number of plugboard climbs per candidate. */
+    static final int DEFAULT_RESTARTS = 4;
+
+    /** Default number of solutions reported. */
+    static final int DEFAULT_LIMIT = 10;
+
+    /** Default length of the n-grams of a trained model. */
+    static final int DEFAULT_N = 3;
+
+    /** Number of random pairs in the starting plugboard of a restart. */
+    private static final int RANDOM_PAIRS = 5;
+
+    /** Alphabet of the configuration. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** The model scoring plaintexts. */
+    private final NgramModel _model;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Slot of the leftmost moving rotor. */
+    private final int _first;
+
+    /** All choices of rotors for the slots. */
+    private final Rotor[][] _orders;
+
+    /** Stepping rules of each order. */
+    private final Odometer[] _odometers;
+
+    /** Forward substitution tables of each order, by slot. */
+    private final int[][][] _forward;
+
+    /** Backward substitution tables of each order, by slot. */
+    private final int[][][] _backward;
+
+    /** Number of candidates kept from stage 1. */
+    private int _candidates;
+
+    /** Number of plugboard climbs per candidate. */
+    private int _restarts;
+
+    /** Maximum number of solutions reported. */
+    private int _limit;
+
+    /** Seed of the random plugboards. */
+    private long _seed;
+
+    /** Ciphertext of the current attack. */
+    private int[] _cipher;
+
+    /** Best candidates of stage 1 of the current attack, worst first. */
+    private PriorityQueue<Candidate> _best;
+}
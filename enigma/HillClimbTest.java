@@ -0,0 +1,101 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the HillClimb class.
+ *  @author Adrian Kwan
+ */
+public class HillClimbTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** English text on which the n-gram model is trained.  The messages
+     *  attacked are not drawn from it. */
+    private static final String CORPUS =
+        "Four score and seven years ago our fathers brought forth on this "
+        + "continent, a new nation, conceived in Liberty, and dedicated to "
+        + "the proposition that all men are created equal. Now we are "
+        + "engaged in a great civil war, testing whether that nation, or "
+        + "any nation so conceived and so dedicated, can long endure. We "
+        + "are met on a great battle-field of that war. We have come to "
+        + "dedicate a portion of that field, as a final resting place for "
+        + "those who here gave their lives that that nation might live. It "
+        + "is altogether fitting and proper that we should do this. But, in "
+        + "a larger sense, we can not dedicate, we can not consecrate, we "
+        + "can not hallow this ground. The brave men, living and dead, who "
+        + "struggled here, have consecrated it, far above our poor power to "
+        + "add or detract. The world will little note, nor long remember "
+        + "what we say here, but it can never forget what they did here. It "
+        + "is for us the living, rather, to be dedicated here to the "
+        + "unfinished work which they who fought here have thus far so "
+        + "nobly advanced. It is rather for us to be here dedicated to the "
+        + "great task remaining before us, that from these honored dead we "
+        + "take increased devotion to that cause for which they gave the "
+        + "last full measure of devotion, that we here highly resolve that "
+        + "these dead shall not have died in vain, that this nation, under "
+        + "God, shall have a new birth of freedom, and that government of "
+        + "the people, by the people, for the people, shall not perish "
+        + "from the earth. We the People of the United States, in Order to "
+        + "form a more perfect Union, establish Justice, insure domestic "
+        + "Tranquility, provide for the common defence, promote the general "
+        + "Welfare, and secure the Blessings of Liberty to ourselves and "
+        + "our Posterity, do ordain and establish this Constitution for the "
+        + "United States of America.";
+
+    /** A message, not in CORPUS, long enough to be attacked. */
+    private static final String MESSAGE =
+        "ONCEUPONAMIDNIGHTDREARYWHILEIPONDEREDWEAKANDWEARY"
+        + "OVERMANYAQUAINTANDCURIOUSVOLUMEOFFORGOTTENLOREWHILEINODDED"
+        + "NEARLYNAPPINGSUDDENLYTHERECAMEATAPPINGASOFSOMEONEGENTLY"
+        + "RAPPINGRAPPINGATMYCHAMBERDOORTISSOMEVISITORIMUTTERED"
+        + "TAPPINGATMYCHAMBERDOORONLYTHISANDNOTHINGMOREAHDISTINCTLY"
+        + "IREMEMBERITWASINTHEBLEAKDECEMBERANDEACHSEPARATEDYINGEMBER"
+        + "WROUGHTITSGHOSTUPONTHEFLOOR";
+
+    /** Return an attack on three-slot machines with the naval rotors,
+     *  using trigrams trained on CORPUS. */
+    private HillClimb attack() throws IOException {
+        NgramModel model =
+            NgramModel.train(new StringReader(CORPUS), UPPER, 3);
+        HillClimb attack =
+            new HillClimb(new Machine(UPPER, 3, 2, navalRotors().values()),
+                          model);
+        attack.setCandidates(4);
+        attack.setRestarts(1);
+        return attack;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testAttack() throws IOException {
+        Machine mach = navalMachine(2, "AB", "C", "II", "I");
+        mach.setPlugboard(new Permutation("(AQ) (ET) (RS)", UPPER));
+        List<HillClimb.Solution> found =
+            attack().attack(mach.convert(MESSAGE), ForkJoinPool.commonPool());
+        assertEquals("* C II I AB AA (AQ) (ET) (RS)",
+                     found.get(0).settings());
+        for (int i = 1; i < found.size(); i += 1) {
+            assertTrue(found.get(i - 1).score() >= found.get(i).score());
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testShortMessage() throws IOException {
+        attack().attack("AB", ForkJoinPool.commonPool());
+    }
+
+}
@@ -0,0 +1,402 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** A known-plaintext attack on an Enigma configuration.  Given a
+ *  ciphertext and a crib (plaintext known to lie at some offset in the
+ *  message), a search tries every choice of rotors, rotor positions and
+ *  ring settings under a fixed plugboard, and reports the settings under
+ *  which the machine turns the crib into the ciphertext.
+ *
+ *  Each rotor's wiring depends only on the difference between its
+ *  position and its ring setting, so a search uses the rotor's table of
+ *  substitutions for every such difference (see Rotor.forwardTable).  A
+ *  candidate is abandoned at its first character that does not match,
+ *  and the candidates are divided among the threads of a pool.  The ring
+ *  settings of the reflector and of the rotors whose notches never take
+ *  effect (the non-moving rotors and the leftmost moving rotor) change
+ *  nothing but their wiring offset, so only their ring setting 0 is
+ *  tried; any match is reported with ring setting 0 for them.
+ *  @author Adrian Kwan
+ */
+class KeySearch {
+
+    /** A search over the rotors available to MACHINE, a machine with no
+     *  rotors inserted as read from a configuration.  Initially, the
+     *  plugboard is empty, the crib is at offset 0, and at most
+     *  DEFAULT_LIMIT matches are reported. */
+    KeySearch(Machine machine) {
+        _alphabet = machine.alphabet();
+        _size = _alphabet.size();
+        _numRotors = machine.numRotors();
+        _first = _numRotors - machine.numPawls();
+        _plugboardCycles = "";
+        _plugboard = new Permutation("", _alphabet);
+        _limit = DEFAULT_LIMIT;
+        _orders = new ArrayList<>();
+        for (Rotor[] rotors : rotorOrders(machine)) {
+            _orders.add(new Order(rotors, _numRotors - _first));
+        }
+        _ringSettings = SubstitutionTable.numStates(_size,
+                                                    _numRotors - _first - 1);
+        if (_ringSettings < 0
+            || (long) _orders.size() * _ringSettings * _size
+               > Integer.MAX_VALUE) {
+            throw error("key space too large to search");
+        }
+    }
+
+    /** Use the plugboard described by CYCLES in all candidates. */
+    void setPlugboard(String cycles) {
+        _plugboard = new Permutation(cycles, _alphabet);
+        _plugboardCycles = cycles.trim();
+    }
+
+    /** Report at most LIMIT matching settings from each search. */
+    void setLimit(int limit) {
+        _limit = limit;
+    }
+
+    /** Look for the crib at OFFSET >= 0 characters into messages. */
+    void setOffset(long offset) {
+        _offset = offset;
+    }
+
+    /** Return the settings lines, in the form accepted by Main, under
+     *  which the crib CRIB encrypts to the corresponding characters of
+     *  CIPHERTEXT, searching with the threads of POOL.  The characters of
+     *  CIPHERTEXT are those following the crib's offset.  Whitespace in
+     *  either is ignored.  At most the limit set by setLimit are
+     *  returned, in sorted order; matched() gives the number found. */
+    List<String> search(String ciphertext, String crib, ForkJoinPool pool) {
+        int[] plain = indices(_alphabet, crib);
+        int[] cipher = indices(_alphabet, ciphertext);
+        if (plain.length == 0 || plain.length > cipher.length) {
+            throw error("crib must be non-empty and no longer than the "
+                        + "ciphertext");
+        }
+        _plain = new int[plain.length];
+        _cipher = new int[plain.length];
+        for (int i = 0; i < plain.length; i += 1) {
+            _plain[i] = _plugboard.permute(plain[i]);
+            _cipher[i] = _plugboard.invert(cipher[i]);
+        }
+        _searched = new LongAdder();
+        _matched = new LongAdder();
+        _reported = new AtomicInteger();
+        _results = new ConcurrentLinkedQueue<>();
+        pool.invoke(new RangeTask(0, _orders.size() * _ringSettings * _size,
+                                  this::searchTask));
+        List<String> result = new ArrayList<>(_results);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Return the number of keys tried by the last search. */
+    long searched() {
+        return _searched.sum();
+    }
+
+    /** Return the number of keys that matched in the last search. */
+    long matched() {
+        return _matched.sum();
+    }
+
+    /** Return every choice of rotors from those available to MACHINE
+     *  that may fill its slots: a reflector, then distinct non-moving
+     *  rotors up to its first pawl slot, then distinct moving rotors.
+     *  The choices are in order of the rotors' names. */
+    static List<Rotor[]> rotorOrders(Machine machine) {
+        List<Rotor> reflectors = new ArrayList<>();
+        List<Rotor> fixed = new ArrayList<>();
+        List<Rotor> moving = new ArrayList<>();
+        for (Rotor r : machine.allRotors()) {
+            if (r.reflecting()) {
+                reflectors.add(r);
+            } else if (r.rotates()) {
+                moving.add(r);
+            } else {
+                fixed.add(r);
+            }
+        }
+        Comparator<Rotor> byName = Comparator.comparing(Rotor::name);
+        reflectors.sort(byName);
+        fixed.sort(byName);
+        moving.sort(byName);
+
+        List<Rotor[]> result = new ArrayList<>();
+        Rotor[] rotors = new Rotor[machine.numRotors()];
+        int first = machine.numRotors() - machine.numPawls();
+        for (Rotor reflector : reflectors) {
+            rotors[0] = reflector;
+            addOrders(result, rotors, 1, first, fixed, moving);
+        }
+        return result;
+    }
+
+    /** Add to RESULT all the choices of rotors that complete ROTORS from
+     *  slot K on, taking non-moving rotors from FIXED for slots before
+     *  FIRST and moving rotors from MOVING for the rest, each at most
+     *  once. */
+    private static void addOrders(List<Rotor[]> result, Rotor[] rotors,
+                                  int k, int first, List<Rotor> fixed,
+                                  List<Rotor> moving) {
+        if (k == rotors.length) {
+            result.add(rotors.clone());
+            return;
+        }
+        for (Rotor r : k < first ? fixed : moving) {
+            boolean used = false;
+            for (int i = 1; i < k; i += 1) {
+                used |= rotors[i] == r;
+            }
+            if (!used) {
+                rotors[k] = r;
+                addOrders(result, rotors, k + 1, first, fixed, moving);
+            }
+        }
+    }
+
+    /** Advance START, the positions of the rotors in slots 2 and up of
+     *  a machine whose alphabet has SIZE characters, to the next
+     *  combination, returning false when all have been seen. */
+    static boolean increment(int[] start, int size) {
+        for (int i = start.length - 1; i >= 2; i -= 1) {
+            start[i] += 1;
+            if (start[i] < size) {
+                return true;
+            }
+            start[i] = 0;
+        }
+        return false;
+    }
+
+    /** Return the indices in ALPHABET of the characters of TEXT,
+     *  ignoring whitespace. */
+    static int[] indices(Alphabet alphabet, String text) {
+        return text.codePoints()
+            .filter(ch -> !Character.isWhitespace(ch))
+            .map(ch -> {
+                if (!alphabet.contains(ch)) {
+                    throw error("character not in alphabet: %s",
+                                new String(Character.toChars(ch)));
+                }
+                return alphabet.toInt(ch);
+            }).toArray();
+    }
+
+    /** Try all the keys of task T: the keys with a given rotor order,
+     *  ring settings and position for the rotor in slot 1. */
+    private void searchTask(int t) {
+        int perOrder = _ringSettings * _size;
+        Order order = _orders.get(t / perOrder);
+        int[] rings = new int[_numRotors];
+        int[] start = new int[_numRotors];
+        int[] posns = new int[_numRotors];
+        int rest = (t % perOrder) / _size;
+        for (int i = _numRotors - 1; i > _first; i -= 1) {
+            rings[i] = rest % _size;
+            rest /= _size;
+        }
+        start[1] = t % _size;
+        long count = 0;
+        do {
+            System.arraycopy(start, 0, posns, 0, _numRotors);
+            if (matches(order, posns, rings)) {
+                record(order, start, rings);
+            }
+            count += 1;
+        } while (increment(start, _size));
+        _searched.add(count);
+    }
+
+    /** Return true iff the rotors of ORDER, starting at positions POSNS
+     *  with ring settings RINGS, turn the crib into the ciphertext.
+     *  Changes POSNS. */
+    private boolean matches(Order order, int[] posns, int[] rings) {
+        int size = _size;
+        order._odometer.advance(posns, _offset);
+        for (int i = 0; i < _plain.length; i += 1) {
+            order._odometer.step(posns);
+            int c = _plain[i];
+            for (int k = _numRotors - 1; k >= 0; k -= 1) {
+                int d = posns[k] - rings[k];
+                if (d < 0) {
+                    d += size;
+                }
+                c = order._forward[k][d * size + c];
+            }
+            for (int k = 1; k < _numRotors; k += 1) {
+                int d = posns[k] - rings[k];
+                if (d < 0) {
+                    d += size;
+                }
+                c = order._backward[k][d * size + c];
+            }
+            if (c != _cipher[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Note a match with the rotors of ORDER at initial positions START
+     *  and ring settings RINGS. */
+    private void record(Order order, int[] start, int[] rings) {
+        _matched.increment();
+        if (_reported.getAndIncrement() >= _limit) {
+            return;
+        }
+        StringBuilder line = new StringBuilder("*");
+        for (Rotor r : order._rotors) {
+            line.append(' ').append(r.name());
+        }
+        line.append(' ');
+        for (int i = 1; i < _numRotors; i += 1) {
+            line.appendCodePoint(_alphabet.codePoint(start[i]));
+        }
+        line.append(' ');
+        for (int i = 1; i < _numRotors; i += 1) {
+            line.appendCodePoint(_alphabet.codePoint(rings[i]));
+        }
+        if (!_plugboardCycles.isEmpty()) {
+            line.append(' ').append(_plugboardCycles);
+        }
+        _results.add(line.toString());
+    }
+
+    /** One choice of rotors for the slots of a machine, with its stepping
+     *  rules and the substitution tables of its rotors. */
+    private static final class Order {
+
+        /** An order with ROTORS in its slots and PAWLS pawls. */
+        Order(Rotor[] rotors, int pawls) {
+            _rotors = rotors;
+            _odometer = new Odometer(rotors, pawls);
+            _forward = new int[rotors.length][];
+            _backward = new int[rotors.length][];
+            for (int k = 0; k < rotors.length; k += 1) {
+                _forward[k] = rotors[k].forwardTable();
+                _backward[k] = rotors[k].backwardTable();
+            }
+        }
+
+        /** The rotors in each slot. */
+        private final Rotor[] _rotors;
+
+        /** Stepping rules of the rotors. */
+        private final Odometer _odometer;
+
+        /** Forward substitutions of the rotor in each slot, by offset. */
+        private final int[][] _forward;
+
+        /** Backward substitutions of the rotor in each slot, by offset. */
+        private final int[][] _backward;
+    }
+
+    /** Search for the keys of the configuration file named by the first
+     *  of ARGS under which the crib given as the third encrypts to the
+     *  ciphertext given as the second, printing the matching settings
+     *  lines, followed by the search rate on the standard error.
+     *  Options --plugboard=CYCLES, --offset=N and --limit=N are as for
+     *  setPlugboard, setOffset and setLimit. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--plugboard=(.*) --offset=(\\d+) "
+                                + "--limit=(\\d+) --=(.*){3}", args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.KeySearch "
+                            + "[--plugboard=CYCLES] [--offset=N] "
+                            + "[--limit=N] CONFIG CIPHERTEXT CRIB");
+            }
+            List<String> files = options.get("--");
+            KeySearch search = new KeySearch(Main.configuration(files.get(0)));
+            if (options.contains("--plugboard")) {
+                search.setPlugboard(options.getLast("--plugboard"));
+            }
+            if (options.contains("--offset")) {
+                search.setOffset(Long.parseLong(options.getLast("--offset")));
+            }
+            if (options.contains("--limit")) {
+                search.setLimit(Integer.parseInt(options.getLast("--limit")));
+            }
+            long start = System.nanoTime();
+            List<String> found = search.search(files.get(1), files.get(2),
+                                               ForkJoinPool.commonPool());
+            double seconds = (System.nanoTime() - start) / 1e9;
+            for (String line : found) {
+                System.out.println(line);
+            }
+            System.err.printf("Searched %d keys in %.2f s (%.0f keys/s); "
+                              + "%d matched.%n", search.searched(), seconds,
+                              search.searched() / seconds, search.matched());
+            return;
+        } catch (EnigmaException | NumberFormatException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Number of matches reported by default. */
+    static final int DEFAULT_LIMIT = 100;
+
+    /** Alphabet of the configuration. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Slot of the leftmost moving rotor. */
+    private final int _first;
+
+    /** All choices of rotors for the slots. */
+    private final List<Order> _orders;
+
+    /** Number of combinations of the ring settings that are searched. */
+    private final int _ringSettings;
+
+    /** Plugboard used in all candidates, and its description. */
+    private Permutation _plugboard;
+
+    /** Description of _plugboard. */
+    private String _plugboardCycles;
+
+    /** Maximum number of matches reported. */
+    private int _limit;
+
+    /** Offset of the crib in the message. */
+    private long _offset;
+
+    /** Crib of the current search, after the plugboard. */
+    private int[] _plain;
+
+    /** Ciphertext of the current search, before the plugboard. */
+    private int[] _cipher;
+
+    /** Keys tried by the current search. */
+    private LongAdder _searched;
+
+    /** Matches found by the current search. */
+    private LongAdder _matched;
+
+    /** Matches offered for reporting by the current search. */
+    private AtomicInteger _reported;
+
+    /** Matches reported by the current search. */
+    private ConcurrentLinkedQueue<String> _results;
+}
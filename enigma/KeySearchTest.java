@@ -0,0 +1,102 @@
+package enigma;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeySearch class.
+ *  @author Adrian Kwan
+ */
+public class KeySearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A crib long enough to leave few false matches. */
+    private static final String CRIB = "WEATHERREPORT";
+
+    /** Return the encryption of PREFIX followed by CRIB with rings RING
+     *  and plugboard PLUGBOARD on a three-slot machine holding C II I at
+     *  AB. */
+    private String encrypt(String ring, String plugboard, String prefix) {
+        Machine mach = navalMachine(2, "AB", "C", "II", "I");
+        mach.setRing(ring);
+        mach.setPlugboard(new Permutation(plugboard, UPPER));
+        return mach.convert(prefix + CRIB);
+    }
+
+    /** Return a search of all three-slot machines with the naval
+     *  rotors, with plugboard PLUGBOARD. */
+    private KeySearch search(String plugboard) {
+        KeySearch search =
+            new KeySearch(new Machine(UPPER, 3, 2, navalRotors().values()));
+        search.setPlugboard(plugboard);
+        return search;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSearch() {
+        KeySearch search = search("(AQ)");
+        List<String> found = search.search(encrypt("AC", "(AQ)", ""), CRIB,
+                                           ForkJoinPool.commonPool());
+        assertTrue(found.contains("* C II I AB AC (AQ)"));
+        assertEquals(found.size(), search.matched());
+        assertEquals(2L * 8 * 7 * 26 * 26 * 26, search.searched());
+    }
+
+    @Test
+    public void testOffsetAndLimit() {
+        KeySearch search = search("(AQ)");
+        search.setOffset(5);
+        search.setLimit(0);
+        String cipher = encrypt("AC", "(AQ)", "HELLO").substring(5);
+        List<String> found =
+            search.search(cipher, CRIB, ForkJoinPool.commonPool());
+        assertTrue(found.isEmpty());
+        assertTrue(search.matched() > 0);
+        search.setLimit(1000);
+        found = search.search(cipher, CRIB, ForkJoinPool.commonPool());
+        assertTrue(found.contains("* C II I AB AC (AQ)"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testLongCrib() {
+        search("").search("ABC", "ABCD", ForkJoinPool.commonPool());
+    }
+
+    @Test
+    public void testRotorOrders() {
+        List<Rotor[]> orders = KeySearch.rotorOrders(
+            new Machine(UPPER, 5, 3, navalRotors().values()));
+        assertEquals(2 * 2 * 8 * 7 * 6, orders.size());
+        for (Rotor[] order : orders) {
+            assertTrue(order[0].reflecting());
+            assertFalse(order[1].rotates());
+            assertTrue(order[2].rotates());
+        }
+    }
+
+    @Test
+    public void testIncrement() {
+        int[] start = { 7, 3, 0, 0, 0 };
+        int count = 1;
+        while (KeySearch.increment(start, 3)) {
+            assertEquals(7, start[0]);
+            assertEquals(3, start[1]);
+            count += 1;
+        }
+        assertEquals(27, count);
+        assertArrayEquals(new int[] { 7, 3, 0, 0, 0 }, start);
+    }
+
+}
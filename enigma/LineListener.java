@@ -0,0 +1,20 @@
+package enigma;
+
+import java.io.IOException;
+
+/** A receiver of the points in its input from which a MessageProcessor
+ *  could resume, attached with MessageProcessor.setLineListener.
+ *  @author Adrian Kwan
+ */
+interface LineListener {
+
+    /** Note that the processor has just completed a line, having
+     *  consumed the first CONSUMED characters of its input (including
+     *  the whole line end).  At this point, everything the processor
+     *  has taken from the input is reflected in the state of its
+     *  machine and in its output, which it writes out in full on
+     *  MessageProcessor.flush(), so that processing the rest of the
+     *  input with a machine in the same state continues the output
+     *  exactly. */
+    void lineEnded(long consumed) throws IOException;
+}
@@ -1,6 +1,13 @@
 package enigma;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 
 
 import static enigma.EnigmaException.*;
@@ -21,6 +28,28 @@ class Machine {
         _pawls = pawls;
         _allRotors = allRotors;
         _rotors = new Rotor[_numRotors];
+        _posns = new int[_numRotors];
+        _rings = new int[_numRotors];
+    }
+
+    /** Return a new machine with the same available rotors as me, and
+     *  the same rotors, settings, ring settings, plugboard and compilation
+     *  as I have now, but no trace listener.  The copy shares my rotors,
+     *  plugboard, compiled table and table cache, none of which either
+     *  machine changes unsynchronized, and so may be used on another
+     *  thread from me. */
+    Machine copy() {
+        Machine result =
+            new Machine(_alphabet, _numRotors, _pawls, _allRotors);
+        System.arraycopy(_rotors, 0, result._rotors, 0, _numRotors);
+        System.arraycopy(_posns, 0, result._posns, 0, _numRotors);
+        System.arraycopy(_rings, 0, result._rings, 0, _numRotors);
+        result._plugboard = _plugboard;
+        result._odometer = _odometer;
+        result._compiled = _compiled;
+        result._table = _table;
+        result._cache = _cache;
+        return result;
     }
 
     /** Return the number of rotor slots I have. */
@@ -44,13 +73,29 @@ class Machine {
         return _rotors;
     }
 
+    /** Return the current setting of Rotor #K. */
+    int setting(int k) {
+        return _posns[k];
+    }
+
+    /** Return the ring setting of Rotor #K. */
+    int ring(int k) {
+        return _rings[k];
+    }
+
     Alphabet alphabet() {
         return _alphabet;
     }
 
+    /** Return the rotors available to me. */
+    Collection<Rotor> allRotors() {
+        return _allRotors;
+    }
+
     /** Set my rotor slots to the rotors named ROTORS from my set of
      *  available rotors (ROTORS[0] names the reflector).
-     *  Initially, all rotors are set at their 0 setting. */
+     *  Initially, all rotors are set at their 0 setting, with ring
+     *  setting 0. */
     void insertRotors(String[] rotors) {
         if (rotors.length != numRotors()) {
             throw new EnigmaException("Number of Rotors Inserted Does "
@@ -80,29 +125,80 @@ class Machine {
         if (count != numPawls()) {
             throw new EnigmaException("Wrong number of arguments");
         }
+        _odometer = new Odometer(_rotors, _pawls);
+        _posns = new int[_numRotors];
+        _rings = new int[_numRotors];
+        _table = null;
     }
 
     /** Set my rotors according to SETTING, which must be a string of
      *  numRotors()-1 characters in my alphabet. The first letter refers
      *  to the leftmost rotor setting (not counting the reflector).  */
     void setRotors(String setting) {
-        char[] ch = setting.toCharArray();
+        int[] ch = setting.codePoints().toArray();
+        if (ch.length >= _numRotors) {
+            throw new EnigmaException("Too Many Setting Characters!");
+        }
+        int first = _numRotors - _pawls;
         for (int i = 0; i < ch.length; i++) {
             if (!alphabet().contains(ch[i])) {
                 throw new EnigmaException("Setting Character not in Alphabet!");
             }
-            _rotors[i + 1].set(ch[i]);
+            int old = _posns[i + 1];
+            _posns[i + 1] = _alphabet.toInt(ch[i]);
+            if (i + 1 < first && _posns[i + 1] != old) {
+                _table = null;
+            }
+        }
+    }
+
+    /** Advance my rotors to the settings they would have after
+     *  converting OFFSET >= 0 more characters, without converting them. */
+    void seek(long offset) {
+        int[] posns = settings();
+        _odometer.advance(posns, offset);
+        setSettings(posns);
+    }
+
+    /** Return the setting, in the form accepted by setRotors, that my
+     *  rotors will have after converting OFFSET >= 0 more characters.
+     *  Does not change my state. */
+    String stateAt(long offset) {
+        int[] posns = settings();
+        _odometer.advance(posns, offset);
+        StringBuilder result = new StringBuilder();
+        for (int i = 1; i < _numRotors; i += 1) {
+            result.appendCodePoint(_alphabet.codePoint(posns[i]));
+        }
+        return result.toString();
+    }
+
+    /** Return the current settings of my rotors, indexed by slot. */
+    private int[] settings() {
+        if (_odometer == null) {
+            throw error("rotors not inserted");
         }
+        return _posns.clone();
+    }
+
+    /** Set my rotors (other than the reflector) to POSNS, indexed by
+     *  slot. */
+    private void setSettings(int[] posns) {
+        System.arraycopy(posns, 1, _posns, 1, _numRotors - 1);
     }
 
     /** Sets the ring settings from RING. */
     void setRing(String ring) {
-        char[] temp = ring.toCharArray();
+        int[] temp = ring.codePoints().toArray();
+        if (!ring.isBlank() && temp.length != _numRotors - 1) {
+            throw error("wrong number of ring settings in %s", ring);
+        }
         if (!ring.isBlank()) {
             for (int i = 1; i < _numRotors; i++) {
-                _rotors[i].setRsetting(temp[i - 1]);
+                _rings[i] = _alphabet.toInt(temp[i - 1]);
             }
         }
+        _table = null;
     }
 
     /** Return the current plugboard's permutation. */
@@ -113,6 +209,183 @@ class Machine {
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
         _plugboard = plugboard;
+        _table = null;
+    }
+
+    /** Return a compact record of my state: the names of my rotors,
+     *  their settings and ring settings, and the characters my plugboard
+     *  moves.  restore() puts a machine with the same available rotors
+     *  back into this state.  Numbers are written in as few bytes as
+     *  their size allows, so that the record of a machine with a
+     *  handful of rotors and plugs takes a few dozen bytes. */
+    byte[] checkpoint() {
+        if (_odometer == null) {
+            throw error("rotors not inserted");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeNumber(out, _numRotors);
+        for (int i = 0; i < _numRotors; i += 1) {
+            byte[] name = _rotors[i].name().getBytes(StandardCharsets.UTF_8);
+            writeNumber(out, name.length);
+            out.write(name, 0, name.length);
+            writeNumber(out, _posns[i]);
+            writeNumber(out, _rings[i]);
+        }
+        int moved = 0;
+        for (int c = 0; c < _alphabet.size(); c += 1) {
+            if (plugged(c) != c) {
+                moved += 1;
+            }
+        }
+        writeNumber(out, moved);
+        for (int c = 0; c < _alphabet.size(); c += 1) {
+            if (plugged(c) != c) {
+                writeNumber(out, c);
+                writeNumber(out, plugged(c));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /** Put me into the state recorded by CHECKPOINT, which was returned
+     *  by checkpoint() for a machine with the same alphabet, slots and
+     *  available rotors as mine. */
+    void restore(byte[] checkpoint) {
+        ByteArrayInputStream in = new ByteArrayInputStream(checkpoint);
+        int size = _alphabet.size();
+        if (readNumber(in, _numRotors + 1) != _numRotors) {
+            throw error("checkpoint is of a machine with a different "
+                        + "number of rotors");
+        }
+        String[] names = new String[_numRotors];
+        int[] posns = new int[_numRotors];
+        int[] rings = new int[_numRotors];
+        for (int i = 0; i < _numRotors; i += 1) {
+            byte[] name = new byte[readNumber(in, checkpoint.length)];
+            if (in.read(name, 0, name.length) != name.length) {
+                throw error("checkpoint truncated");
+            }
+            names[i] = new String(name, StandardCharsets.UTF_8);
+            posns[i] = readNumber(in, size);
+            rings[i] = readNumber(in, size);
+        }
+        int[] plugs = new int[size];
+        for (int c = 0; c < size; c += 1) {
+            plugs[c] = c;
+        }
+        int moved = readNumber(in, size + 1);
+        for (int k = 0; k < moved; k += 1) {
+            int c = readNumber(in, size);
+            plugs[c] = readNumber(in, size);
+        }
+        if (in.available() != 0) {
+            throw error("bad checkpoint");
+        }
+        Permutation plugboard = new Permutation(plugs, _alphabet);
+        insertRotors(names);
+        System.arraycopy(posns, 0, _posns, 0, _numRotors);
+        System.arraycopy(rings, 0, _rings, 0, _numRotors);
+        setPlugboard(plugboard);
+    }
+
+    /** Return the image of C under my plugboard, if any. */
+    private int plugged(int c) {
+        return _plugboard == null ? c : _plugboard.permute(c);
+    }
+
+    /** Write the number N >= 0 to OUT in seven-bit groups, least
+     *  significant first, each but the last with its high bit set. */
+    private static void writeNumber(ByteArrayOutputStream out, int n) {
+        while (n >= VARINT_HIGH) {
+            out.write(n & (VARINT_HIGH - 1) | VARINT_HIGH);
+            n >>>= VARINT_SHIFT;
+        }
+        out.write(n);
+    }
+
+    /** Return a number written by writeNumber read from IN, which must
+     *  be less than LIMIT. */
+    private static int readNumber(ByteArrayInputStream in, int limit) {
+        long n = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += VARINT_SHIFT) {
+            int b = in.read();
+            if (b == -1) {
+                throw error("checkpoint truncated");
+            }
+            n |= (long) (b & (VARINT_HIGH - 1)) << shift;
+            if (b < VARINT_HIGH) {
+                if (n >= limit) {
+                    throw error("bad checkpoint");
+                }
+                return (int) n;
+            }
+        }
+        throw error("bad checkpoint");
+    }
+
+    /** Return true iff I convert through precomputed tables. */
+    boolean compiled() {
+        return _compiled;
+    }
+
+    /** If COMPILED, convert characters by looking up the substitution
+     *  for my current rotor state in a table covering every state,
+     *  which is built the first time it is needed after my rotors, ring
+     *  settings or plugboard change.  Machines too large to tabulate
+     *  (see SubstitutionTable.fits) convert rotor by rotor regardless. */
+    void setCompiled(boolean compiled) {
+        _compiled = compiled;
+        _table = null;
+    }
+
+    /** Take the tables of my compiled configurations from CACHE, if not
+     *  null, which may be shared with other machines having the same
+     *  available rotors, rather than building each one myself. */
+    void setTableCache(TableCache cache) {
+        _cache = cache;
+        _table = null;
+    }
+
+    /** Return the table for my current configuration, building it if
+     *  needed, or null if I am not compiled or too large to compile. */
+    private SubstitutionTable table() {
+        if (_table == null && _compiled
+            && SubstitutionTable.fits(_alphabet.size(), _pawls)) {
+            _table = _cache == null
+                ? new SubstitutionTable(this) : _cache.get(this);
+        }
+        return _table;
+    }
+
+    /** Return the number of the current state of my pawl rotors, as
+     *  defined by SubstitutionTable. */
+    private int stateIndex() {
+        return stateIndex(_posns);
+    }
+
+    /** Return the table I convert through, building it if needed, or
+     *  null if I convert rotor by rotor. */
+    SubstitutionTable compiledTable() {
+        return _compiled ? table() : null;
+    }
+
+    /** Return the stepping rules of my current rotors. */
+    Odometer odometer() {
+        if (_odometer == null) {
+            throw error("rotors not inserted");
+        }
+        return _odometer;
+    }
+
+    /** Return the number of the state of my pawl rotors when my rotors
+     *  have settings POSNS, as defined by SubstitutionTable. */
+    int stateIndex(int[] posns) {
+        int size = _alphabet.size();
+        int state = 0;
+        for (int i = _numRotors - _pawls; i < _numRotors; i += 1) {
+            state = state * size + posns[i];
+        }
+        return state;
     }
 
     /** Returns the result of converting the input character C (as an
@@ -120,72 +393,322 @@ class Machine {
      *  the machine. */
     int convert(int c) {
         advanceRotors();
-        if (Main.verbose()) {
-            System.err.printf("[");
-            for (int r = 1; r < numRotors(); r += 1) {
-                System.err.printf("%c",
-                        alphabet().toChar(getRotor(r).setting()));
+        if (_trace != null) {
+            return trace(c);
+        }
+        if (_compiled) {
+            SubstitutionTable table = table();
+            if (table != null) {
+                return table.convert(stateIndex(), c);
             }
-            System.err.printf("] %c -> ", alphabet().toChar(c));
         }
-        c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(c));
+        return convertAt(_posns, c);
+    }
+
+    /** Have LISTENER, if not null, trace each character I convert from
+     *  now on, replacing any previous listener.  While a listener is
+     *  attached, I convert one character at a time without using a
+     *  compiled table. */
+    void setTraceListener(TraceListener listener) {
+        _trace = listener;
+        if (listener != null) {
+            _traceSettings = new int[_numRotors - 1];
+            _tracePath = new int[tracePathLength()];
+        }
+    }
+
+    /** Return the length of the signal path passed to a trace listener:
+     *  input, plugboard, each rotor forward and backward, and output. */
+    int tracePathLength() {
+        return 2 * _numRotors + 2;
+    }
+
+    /** Return the conversion of C by my rotors at their current settings,
+     *  reporting it to my trace listener. */
+    private int trace(int c) {
+        int[] path = _tracePath;
+        for (int i = 1; i < _numRotors; i += 1) {
+            _traceSettings[i - 1] = _posns[i];
         }
-        c = applyRotors(c);
-        c = plugboard().permute(c);
-        if (Main.verbose()) {
-            System.err.printf("%c%n", alphabet().toChar(c));
+        int k = 0;
+        path[k] = c;
+        k += 1;
+        c = _plugboard.permute(c);
+        path[k] = c;
+        k += 1;
+        for (int i = _numRotors - 1; i >= 0; i -= 1) {
+            int contact = _rotors[i].contactForward(c, _posns[i], _rings[i]);
+            path[k] = contact;
+            k += 1;
+            c = _rotors[i].exit(contact, _posns[i], _rings[i]);
         }
+        for (int i = 1; i < _numRotors; i += 1) {
+            int contact = _rotors[i].contactBackward(c, _posns[i], _rings[i]);
+            path[k] = contact;
+            k += 1;
+            c = _rotors[i].exit(contact, _posns[i], _rings[i]);
+        }
+        c = _plugboard.permute(c);
+        path[k] = c;
+        _trace.trace(_traceSettings, path);
         return c;
     }
 
     /** Advance all rotors to their next position. */
     private void advanceRotors() {
-        boolean[] atNotchArray = new boolean[_numRotors];
-        atNotchArray[_numRotors - 1] = true;
-        for (int i = _rotors.length - 1; i > _rotors.length - _pawls; i--) {
-            if (_rotors[i] == null) {
-                throw new EnigmaException("rotors has null rotor");
+        if (_odometer == null) {
+            throw new EnigmaException("rotors has null rotor");
+        }
+        _odometer.step(_posns);
+    }
+
+    /** Return the result of converting C (as an index in the range
+     *  0..alphabet size - 1) when my rotors have settings POSNS, without
+     *  advancing them or changing my state. */
+    private int convertAt(int[] posns, int c) {
+        int r = _plugboard.permute(c);
+        for (int i = _numRotors - 1; i >= 0; i -= 1) {
+            r = _rotors[i].convertForward(r, posns[i], _rings[i]);
+        }
+        for (int i = 1; i < _numRotors; i += 1) {
+            r = _rotors[i].convertBackward(r, posns[i], _rings[i]);
+        }
+        return _plugboard.permute(r);
+    }
+
+    /** Returns the encoding/decoding of MSG, as for convert(MSG), dividing
+     *  the work among the threads of POOL.  MSG is cut into segments of
+     *  SEGMENT characters; the rotor settings at the start of each are
+     *  found with my odometer, each from those of the segment before (so
+     *  that an odometer that must step through every key press does so
+     *  only once in all), and then all segments convert at once.
+     *  Messages over alphabets with characters outside the Basic
+     *  Multilingual Plane are converted sequentially. */
+    String convert(CharSequence msg, ForkJoinPool pool) {
+        int n = msg.length();
+        if (n < 2 * SEGMENT || _trace != null || !_alphabet.basic()) {
+            return convert(msg.toString());
+        }
+        int segments = (n + SEGMENT - 1) / SEGMENT;
+        int[] starts = new int[segments + 1];
+        pool.invoke(new RangeTask(0, segments, (k) -> {
+            int count = 0;
+            for (int i = k * SEGMENT; i < Math.min(n, (k + 1) * SEGMENT);
+                 i += 1) {
+                if (_alphabet.contains(msg.charAt(i))) {
+                    count += 1;
+                }
             }
-            if (_rotors[i].atNotch()) {
-                atNotchArray[i] = true;
-                atNotchArray[i - 1] = true;
+            starts[k + 1] = count;
+        }));
+        for (int k = 0; k < segments; k += 1) {
+            starts[k + 1] += starts[k];
+        }
+        int[][] begin = new int[segments][];
+        begin[0] = settings();
+        for (int k = 1; k < segments; k += 1) {
+            begin[k] = begin[k - 1].clone();
+            _odometer.advance(begin[k], starts[k] - starts[k - 1]);
+        }
+        SubstitutionTable table = _compiled ? table() : null;
+        char[] result = new char[starts[segments]];
+        pool.invoke(new RangeTask(0, segments, (k) -> {
+            int[] p = begin[k];
+            char[] in = new char[Math.min(n, (k + 1) * SEGMENT) - k * SEGMENT];
+            for (int i = 0; i < in.length; i += 1) {
+                in[i] = msg.charAt(k * SEGMENT + i);
             }
+            convert(p, table, in, 0, in.length, result, starts[k]);
+        }));
+        seek(result.length);
+        return new String(result);
+    }
+
+    /** Returns the encoding/decoding of MSG, updating the state of
+     *  the rotors accordingly. */
+    String convert(String msg) {
+        char[] result = new char[maxOutput(msg.length())];
+        char[] in = new char[Math.min(msg.length(), BUFFER_SIZE)];
+        int n = 0;
+        for (int i = 0; i < msg.length(); ) {
+            int len = chunk(msg, i, in.length);
+            msg.getChars(i, i + len, in, 0);
+            n += convert(in, 0, len, result, n);
+            i += len;
         }
-        for (int i = 0; i < atNotchArray.length; i++) {
-            if (atNotchArray[i]) {
-                _rotors[i].advance();
+        return new String(result, 0, n);
+    }
+
+    /** Converts MSG as for convert(String), appending the result to OUT.
+     *  MSG is converted through buffers of at most BUFFER_SIZE characters
+     *  allocated once per call. */
+    void convert(CharSequence msg, Appendable out) throws IOException {
+        int n = msg.length();
+        char[] in = new char[Math.min(n, BUFFER_SIZE)];
+        char[] result = new char[maxOutput(in.length)];
+        CharBuffer view = CharBuffer.wrap(result);
+        for (int i = 0; i < n; ) {
+            int len = chunk(msg, i, in.length);
+            for (int k = 0; k < len; k += 1) {
+                in[k] = msg.charAt(i + k);
             }
+            out.append(view, 0, convert(in, 0, len, result, 0));
+            i += len;
+        }
+    }
+
+    /** Return the length of the next chunk of at most LIMIT characters of
+     *  MSG to convert starting at index START, avoiding splitting a
+     *  surrogate pair between chunks. */
+    private static int chunk(CharSequence msg, int start, int limit) {
+        int len = Math.min(limit, msg.length() - start);
+        if (len > 1 && start + len < msg.length()
+            && Character.isHighSurrogate(msg.charAt(start + len - 1))) {
+            len -= 1;
         }
+        return len;
+    }
 
+    /** Return the largest number of characters that converting LEN
+     *  characters can produce: LEN, or 2 * LEN if a character of my
+     *  alphabet may take a surrogate pair. */
+    int maxOutput(int len) {
+        return _alphabet.basic() ? len : 2 * len;
     }
 
-    /** Return the result of applying the rotors to the character C (as an
-     *  index in the range 0..alphabet size - 1). */
-    private int applyRotors(int c) {
-        int r = c;
-        for (int i = _rotors.length - 1; i >= 0; i--) {
-            r = _rotors[i].convertForward(r);
+    /** Converts the LEN characters of IN starting at OFF as for
+     *  convert(String), writing the result into OUT starting at index 0,
+     *  and returns the number of characters written.  Characters not in
+     *  my alphabet are skipped, so OUT needs room for at most
+     *  maxOutput(LEN) characters.  Characters outside the Basic
+     *  Multilingual Plane are read and written as surrogate pairs, which
+     *  must not be split at the ends of the slice.  Takes time linear in
+     *  LEN and allocates nothing per character. */
+    int convert(char[] in, int off, int len, char[] out) {
+        return convert(in, off, len, out, 0);
+    }
+
+    /** Converts the LEN characters of IN starting at OFF into OUT
+     *  starting at OUTOFF, returning the number of characters written. */
+    private int convert(char[] in, int off, int len, char[] out,
+                        int outOff) {
+        if (_trace != null) {
+            int j = outOff;
+            for (int i = off; i < off + len; ) {
+                int ch = Character.codePointAt(in, i, off + len);
+                i += Character.charCount(ch);
+                int c = _alphabet.indexOf(ch);
+                if (c >= 0) {
+                    j += Character.toChars(_alphabet.codePoint(convert(c)),
+                                           out, j);
+                }
+            }
+            return j - outOff;
         }
-        for (int j = 1; j < _rotors.length; j++) {
-            r = _rotors[j].convertBackward(r);
+        int[] posns = settings();
+        int n = convert(posns, _compiled ? table() : null,
+                        in, off, len, out, outOff);
+        setSettings(posns);
+        return n;
+    }
+
+    /** Converts the bytes remaining in IN, putting the results into OUT,
+     *  which must have at least as much room.  Each byte is taken by its
+     *  unsigned value as an index into my alphabet, which must have
+     *  Alphabet.BYTE_VALUES characters (see Alphabet.bytes()).  IN and
+     *  OUT may share the same storage, so as to convert in place. */
+    void convert(ByteBuffer in, ByteBuffer out) {
+        if (_alphabet.size() != Alphabet.BYTE_VALUES) {
+            throw error("machine does not have a byte alphabet");
+        }
+        if (_trace != null) {
+            while (in.hasRemaining()) {
+                out.put((byte) convert(in.get() & BYTE_MASK));
+            }
+            return;
+        }
+        int[] posns = settings();
+        SubstitutionTable table = _compiled ? table() : null;
+        int state = stateIndex(posns);
+        while (in.hasRemaining()) {
+            state = _odometer.step(posns, state);
+            int c = in.get() & BYTE_MASK;
+            if (table != null) {
+                c = table.convert(state, c);
+            } else {
+                c = convertAt(posns, c);
+            }
+            out.put((byte) c);
         }
-        return r;
+        setSettings(posns);
     }
 
-    /** Returns the encoding/decoding of MSG, updating the state of
-     *  the rotors accordingly. */
-    String convert(String msg) {
-        String result = "";
-        for (char ch: msg.toCharArray()) {
-            if (_alphabet.contains(ch)) {
-                result += alphabet().toChar(convert(alphabet().toInt(ch)));
+    /** Converts the LEN characters of IN starting at OFF into OUT
+     *  starting at OUTOFF, returning the number of characters written.
+     *  The rotors are taken to start at settings POSNS, which are
+     *  advanced in place; my own rotors are left alone.  Uses TABLE,
+     *  if not null, to convert. */
+    private int convert(int[] posns, SubstitutionTable table,
+                        char[] in, int off, int len, char[] out, int outOff) {
+        if (!_alphabet.basic()) {
+            return convertCodePoints(posns, table, in, off, len, out, outOff);
+        }
+        int state = stateIndex(posns);
+        int j = outOff;
+        for (int i = off; i < off + len; i += 1) {
+            int c = _alphabet.indexOf(in[i]);
+            if (c >= 0) {
+                state = _odometer.step(posns, state);
+                if (table != null) {
+                    c = table.convert(state, c);
+                } else {
+                    c = convertAt(posns, c);
+                }
+                out[j] = _alphabet.toChar(c);
+                j += 1;
             }
         }
-        return result;
+        return j - outOff;
     }
 
+    /** As for convert(POSNS, TABLE, IN, OFF, LEN, OUT, OUTOFF), for an
+     *  alphabet with characters outside the Basic Multilingual Plane. */
+    private int convertCodePoints(int[] posns, SubstitutionTable table,
+                                  char[] in, int off, int len,
+                                  char[] out, int outOff) {
+        int state = stateIndex(posns);
+        int j = outOff;
+        for (int i = off; i < off + len; ) {
+            int ch = Character.codePointAt(in, i, off + len);
+            i += Character.charCount(ch);
+            int c = _alphabet.indexOf(ch);
+            if (c >= 0) {
+                state = _odometer.step(posns, state);
+                if (table != null) {
+                    c = table.convert(state, c);
+                } else {
+                    c = convertAt(posns, c);
+                }
+                j += Character.toChars(_alphabet.codePoint(c), out, j);
+            }
+        }
+        return j - outOff;
+    }
+
+    /** Number of characters converted together by one task in a parallel
+     *  conversion. */
+    static final int SEGMENT = 1 << 16;
+
+    /** Mask selecting the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** The continuation bit and group width of the numbers written by
+     *  checkpoint(). */
+    private static final int VARINT_HIGH = 0x80, VARINT_SHIFT = 7;
+
+    /** Size of the buffers used to convert CharSequences. */
+    static final int BUFFER_SIZE = 1 << 12;
+
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
 
@@ -201,6 +724,34 @@ class Machine {
     /** Array storing the rotors int the machine. */
     private Rotor[] _rotors;
 
+    /** Current settings of my rotors, indexed by slot. */
+    private int[] _posns;
+
+    /** Ring settings of my rotors, indexed by slot. */
+    private int[] _rings;
+
     /** Storing the plugboard. */
     private Permutation _plugboard;
+
+    /** Stepping rules of my current rotors. */
+    private Odometer _odometer;
+
+    /** Listener tracing my conversions, or null. */
+    private TraceListener _trace;
+
+    /** Rotor settings passed to _trace. */
+    private int[] _traceSettings;
+
+    /** Signal path passed to _trace. */
+    private int[] _tracePath;
+
+    /** True iff I convert through _table when possible. */
+    private boolean _compiled;
+
+    /** Substitutions for my current configuration, or null if not yet
+     *  built. */
+    private SubstitutionTable _table;
+
+    /** Source of my compiled tables, or null. */
+    private TableCache _cache;
 }
@@ -1,6 +1,15 @@
 package enigma;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.Timeout;
@@ -116,6 +125,17 @@ public class MachineTest {
         assertEquals(ROTORS.get("I"), mach.getRotor(4));
     }
 
+    @Test(expected = EnigmaException.class)
+    public void testShortRing() {
+        mach1().setRing("AB");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMissingSetting() {
+        Main.setUp(new Machine(AZ, 5, 3, ROTORS.values()),
+                   "* B Beta III IV I");
+    }
+
     @Test
     public void testConvertChar() {
         Machine mach = mach1();
@@ -172,4 +192,279 @@ public class MachineTest {
         assertEquals("NOPDM",
                 mach.convert("HELLO"));
     }
+
+    @Test
+    public void testCompiledMatchesRotors() {
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        msg = msg + msg + msg + msg + msg;
+        Machine mach = mach2();
+        mach.setRing("ABCD");
+        mach.setPlugboard(new Permutation("(AZ) (QT)", AZ));
+        String expected = mach.convert(msg);
+        mach.setRotors("XYZA");
+        String expected2 = mach.convert(msg);
+        Machine compiled = mach2();
+        compiled.setCompiled(true);
+        compiled.setRing("ABCD");
+        compiled.setPlugboard(new Permutation("(AZ) (QT)", AZ));
+        assertEquals(expected, compiled.convert(msg));
+        compiled.setRotors("XYZA");
+        assertEquals(expected2, compiled.convert(msg));
+    }
+
+    @Test
+    public void testPackedStepping() {
+        Machine mach = mach2();
+        Odometer odometer = mach.odometer();
+        int[] posns = new int[5];
+        int[] expected = new int[5];
+        for (int i = 1; i < 5; i += 1) {
+            posns[i] = expected[i] = mach.setting(i);
+        }
+        int state = mach.stateIndex(posns);
+        for (int n = 0; n < 20000; n += 1) {
+            state = odometer.step(posns, state);
+            odometer.step(expected);
+            assertArrayEquals(expected, posns);
+            assertEquals(mach.stateIndex(posns), state);
+        }
+        mach.seek(20000);
+        for (int i = 1; i < 5; i += 1) {
+            assertEquals(mach.setting(i), posns[i]);
+        }
+    }
+
+    /** Check that M.stateAt and M.seek agree with stepping M one
+     *  character at a time, for a range of offsets from START. */
+    private void checkSeek(Machine m, String start) {
+        long[] offsets = { 0, 1, 25, 26, 27, 650, 677, 700, 17576, 20000 };
+        m.setPlugboard(new Permutation("", AZ));
+        for (long n : offsets) {
+            m.setRotors(start);
+            String expected = m.stateAt(n);
+            for (long k = 0; k < n; k += 1) {
+                m.convert(0);
+            }
+            assertEquals("stepped " + n, expected, m.stateAt(0));
+            m.setRotors(start);
+            m.seek(n);
+            assertEquals("seek " + n, expected, m.stateAt(0));
+        }
+    }
+
+    @Test
+    public void testSeek() {
+        checkSeek(mach1(), "AXLE");
+        checkSeek(mach2(), "BRUH");
+        checkSeek(mach2(), "AYLY");
+        checkSeek(mach3(), "CODE");
+        checkSeek(mach4(), "Z");
+        checkSeek(mach5(), "DQ");
+    }
+
+    /** Assert that MACH, with plugboard (BC) (FD), converts a long
+     *  message in parallel, compiled or not, as it does sequentially from
+     *  SETTING, and ends in the same state. */
+    private void checkConvertParallel(Machine mach, String setting) {
+        StringBuilder msg = new StringBuilder();
+        Random gen = new Random(61);
+        for (int i = 0; i < 5 * Machine.SEGMENT + 17; i += 1) {
+            msg.append(gen.nextInt(8) == 0 ? ' ' : (char) ('A' + i % 26));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        mach.setPlugboard(new Permutation("(BC) (FD)", AZ));
+        for (boolean compiled : new boolean[] { false, true }) {
+            mach.setRotors(setting);
+            mach.setCompiled(false);
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < msg.length(); i += 1) {
+                if (AZ.contains(msg.charAt(i))) {
+                    int c = mach.convert(AZ.toInt(msg.charAt(i)));
+                    expected.append(AZ.toChar(c));
+                }
+            }
+            String end = mach.stateAt(0);
+            mach.setRotors(setting);
+            mach.setCompiled(compiled);
+            assertEquals(expected.toString(), mach.convert(msg, pool));
+            assertEquals(end, mach.stateAt(0));
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testConvertParallel() {
+        checkConvertParallel(mach3(), SETTING3);
+    }
+
+    @Test
+    public void testConvertParallelIrregular() {
+        Machine mach = new Machine(AZ, 5, 3, ROTORS.values());
+        mach.insertRotors(new String[] { "B", "III", "Beta", "VI", "I" });
+        checkConvertParallel(mach, "AQZK");
+    }
+
+    @Test
+    public void testConvertBulk() throws IOException {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        char[] in = "xxFROM HIS SHOULDER HIAWATHAxx".toCharArray();
+        char[] out = new char[in.length];
+        int n = mach.convert(in, 2, in.length - 4, out);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", new String(out, 0, n));
+        Machine mach1 = mach1();
+        mach1.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        StringBuilder result = new StringBuilder();
+        mach1.convert("FROM HIS", result);
+        mach1.convert(" SHOULDER HIAWATHA", result);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW", result.toString());
+    }
+
+    @Test
+    public void testCheckpoint() {
+        Machine mach = mach1();
+        mach.setRing("BCDE");
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        mach.convert("FROMHISSHOULDERHIAWATHA");
+        byte[] state = mach.checkpoint();
+        assertTrue(state.length < 64);
+        Machine restored = new Machine(AZ, 5, 3, ROTORS.values());
+        restored.restore(state);
+        assertArrayEquals(state, restored.checkpoint());
+        String msg = "TOOKTHECAMERAOFROSEWOODMADEOFSLIDINGFOLDINGROSEWOOD";
+        assertEquals(mach.convert(msg), restored.convert(msg));
+
+        Machine bytes = byteMachine();
+        bytes.convert(0x41);
+        Machine copy = byteMachine();
+        copy.restore(bytes.checkpoint());
+        for (int c = 0; c < 600; c += 1) {
+            assertEquals(bytes.convert(c % 256), copy.convert(c % 256));
+        }
+        try {
+            restored.restore(Arrays.copyOf(state, state.length - 1));
+            fail("truncated checkpoint accepted");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Return a two-rotor machine over the byte alphabet. */
+    private Machine byteMachine() {
+        Alphabet bytes = Alphabet.bytes();
+        int[] shift = new int[bytes.size()];
+        for (int k = 0; k < shift.length; k += 1) {
+            shift[k] = (k * 5 + 3) % shift.length;
+        }
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R",
+            ByteNotation.permutation("(0001) (02ff) (1080) (7f81)", bytes)));
+        rotors.add(new MovingRotor("S", new Permutation(shift, bytes),
+                                   ByteNotation.decode("00")));
+        Machine mach = new Machine(bytes, 2, 1, rotors);
+        mach.insertRotors(new String[] { "R", "S" });
+        mach.setPlugboard(ByteNotation.permutation("(0aff)", bytes));
+        return mach;
+    }
+
+    @Test
+    public void testConvertBytes() throws IOException {
+        byte[] data = new byte[1000];
+        new Random(61).nextBytes(data);
+        byte[] expected = new byte[data.length];
+        Machine mach = byteMachine();
+        for (int k = 0; k < data.length; k += 1) {
+            expected[k] = (byte) mach.convert(data[k] & 0xff);
+        }
+        byte[] result = data.clone();
+        byteMachine().convert(ByteBuffer.wrap(result),
+                              ByteBuffer.wrap(result));
+        assertArrayEquals(expected, result);
+        InputStream in =
+            new EnigmaInputStream(new ByteArrayInputStream(result),
+                                  byteMachine());
+        assertArrayEquals(data, in.readAllBytes());
+    }
+
+    /** Return a two-rotor machine over an alphabet of letters and
+     *  characters outside the Basic Multilingual Plane. */
+    private Machine astralMachine() {
+        Alphabet astral =
+            new Alphabet("AB\ud83c\udf00\ud83c\udf01C\ud801\udc00");
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation(
+            "(A\ud801\udc00) (B\ud83c\udf01) (\ud83c\udf00C)", astral)));
+        rotors.add(new MovingRotor("S", new Permutation(
+            "(AB\ud83c\udf00) (\ud83c\udf01C)", astral), "\ud83c\udf00"));
+        Machine mach = new Machine(astral, 2, 1, rotors);
+        mach.insertRotors(new String[] { "R", "S" });
+        mach.setPlugboard(new Permutation("(B\ud801\udc00)", astral));
+        mach.setRotors("\ud83c\udf01");
+        return mach;
+    }
+
+    @Test
+    public void testConvertSupplementary() {
+        String msg = "AB \ud83c\udf00C\ud801\udc00 \ud83c\udf01AAB";
+        Machine mach = astralMachine();
+        Alphabet astral = mach.alphabet();
+        StringBuilder expected = new StringBuilder();
+        msg.codePoints().filter(astral::contains).forEach(ch -> {
+            int c = mach.convert(astral.toInt(ch));
+            expected.appendCodePoint(astral.codePoint(c));
+        });
+        String result = astralMachine().convert(msg);
+        assertEquals(expected.toString(), result);
+        assertEquals(msg.replace(" ", ""), astralMachine().convert(result));
+    }
+
+    @Test
+    public void testTrace() {
+        List<String> direct = new ArrayList<>();
+        List<String> buffered = new ArrayList<>();
+        TraceListener recorder = (settings, path) ->
+            direct.add(Arrays.toString(settings) + Arrays.toString(path));
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(YF) (HZ)", AZ));
+        mach.setTraceListener(recorder);
+        assertEquals(25, mach.convert(24));
+        assertEquals("[0, 23, 11, 5][24, 5, 13, 6, 6, 22, 7, 23, 22, 20, "
+                     + "12, 25]", direct.get(0));
+
+        mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        AsyncTraceListener async = new AsyncTraceListener(mach,
+            (settings, path) -> buffered.add(Arrays.toString(settings)
+                                             + Arrays.toString(path)), 4);
+        mach.setTraceListener(async);
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     mach.convert("FROMHISSHOULDERHIAWATHA"));
+        async.close();
+        direct.clear();
+        mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        mach.setTraceListener(recorder);
+        mach.convert("FROMHISSHOULDERHIAWATHA");
+        assertEquals(23, buffered.size());
+        assertEquals(direct, buffered);
+    }
+
+    @Test
+    public void testIndependentMachines() {
+        Machine mach = mach1();
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", AZ));
+        Machine other = mach1();
+        other.setRing("BCDE");
+        other.setPlugboard(new Permutation("", AZ));
+        Machine copy = mach.copy();
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     mach.convert("FROMHISSHOULDERHIAWATHA"));
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                     copy.convert("FROMHISSHOULDERHIAWATHA"));
+        assertEquals("AXLE", mach1().stateAt(0));
+        assertEquals(mach.stateAt(0), copy.stateAt(0));
+        copy.setRotors("AXLE");
+        assertEquals("FROMHISSHOULDERHIAWATHA",
+                     copy.convert("QVPQSOKOILPUBKJZPISFXDW"));
+    }
 }
@@ -1,12 +1,34 @@
 package enigma;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
 import ucb.util.CommandArgs;
 
@@ -25,18 +47,86 @@ public final class Main {
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.  With --serve=ADDRESS, only ARGS[0] is
+     *  given, and messages are instead taken from clients connecting to
+     *  ADDRESS (see EnigmaServer).  With --compile-config, ARGS[0] is
+     *  checked and a snapshot of it (see ConfigSnapshot), which may be
+     *  given in place of a configuration file from then on, is written
+     *  to the file named ARGS[1].  With --checkpoint=FILE, where INPUT
+     *  and OUTPUT are both given, the position reached in each and the
+     *  state of the machine are recorded in FILE every
+     *  DEFAULT_CHECKPOINT_INTERVAL bytes of input (characters, at the
+     *  next line end, without --binary), or every N with --interval=N;
+     *  if FILE exists at the start, the run resumes from the position it
+     *  records instead of starting over.  FILE is removed once the run
+     *  completes. */
     public static void main(String... args) {
         try {
             CommandArgs options =
-                new CommandArgs("--verbose --=(.*){1,3}", args);
-            if (!options.ok()) {
+                new CommandArgs("--verbose --compiled --cache=(\\d{1,7}) "
+                                + "--tables=(.+) --parallel --mapped --binary "
+                                + "--serve=(.+) --compile-config "
+                                + "--checkpoint=(.+) --interval=(\\d{1,18}) "
+                                + "--=(.*){1,3}", args);
+            if (!options.ok()
+                || options.contains("--mapped")
+                   && (options.get("--").size() != 3
+                       || options.contains("--binary"))
+                || options.contains("--serve")
+                   && (options.get("--").size() != 1
+                       || options.contains("--binary"))
+                || options.contains("--binary")
+                   && options.contains("--parallel")
+                || options.contains("--compile-config")
+                   && (options.get("--").size() != 2
+                       || options.contains("--mapped")
+                       || options.contains("--serve"))
+                || options.contains("--checkpoint")
+                   && (options.get("--").size() != 3
+                       || options.contains("--mapped"))
+                || options.contains("--interval")
+                   && !options.contains("--checkpoint")) {
                 throw error("Usage: java enigma.Main [--verbose] "
-                            + "[INPUT [OUTPUT]]");
+                            + "[--compiled [--cache=MB] [--tables=DIR]] "
+                            + "[--parallel | --binary] [INPUT [OUTPUT]] "
+                            + "| [--binary] --checkpoint=FILE [--interval=N] "
+                            + "INPUT OUTPUT "
+                            + "| [--mapped] INPUT OUTPUT "
+                            + "| --serve=ADDRESS "
+                            + "| [--binary] --compile-config SNAPSHOT");
             }
 
             _verbose = options.contains("--verbose");
-            new Main(options.get("--")).process();
+            _compiled = options.contains("--compiled")
+                || options.contains("--tables");
+            _tables = options.getLast("--tables");
+            if (options.contains("--cache")) {
+                _cacheSize = Long.parseLong(options.getLast("--cache"));
+            }
+            _parallel = options.contains("--parallel");
+            _mapped = options.contains("--mapped");
+            _binary = options.contains("--binary");
+            _serve = options.getLast("--serve");
+            _compileConfig = options.contains("--compile-config");
+            _checkpoint = options.getLast("--checkpoint");
+            _checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+            if (options.contains("--interval")) {
+                _checkpointInterval =
+                    Long.parseLong(options.getLast("--interval"));
+                if (_checkpointInterval <= 0) {
+                    throw error("checkpoint interval must be positive");
+                }
+            }
+            Main main = new Main(options.get("--"));
+            if (_compileConfig) {
+                main.compileConfig();
+            } else if (_serve != null) {
+                main.serve();
+            } else if (_binary) {
+                main.processBinary();
+            } else {
+                main.process();
+            }
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
@@ -47,21 +137,102 @@ public final class Main {
     /** Open the necessary files for non-option arguments ARGS (see comment
       *  on main). */
     Main(List<String> args) {
-        _config = getInput(args.get(0));
+        _configName = args.get(0);
+        _byteConfig = _binary;
+
+        if (_compileConfig) {
+            _snapshot = args.get(1);
+            return;
+        }
+
+        if (_serve != null) {
+            return;
+        }
+
+        if (_mapped) {
+            _input = getMapped(args.get(1));
+            _output = getMappedOutput(args.get(2));
+            return;
+        }
+
+        if (_binary) {
+            try {
+                if (args.size() > 1) {
+                    _inputChannel = FileChannel.open(Paths.get(args.get(1)));
+                    _byteInput = Channels.newInputStream(_inputChannel);
+                } else {
+                    _byteInput = System.in;
+                }
+                _byteInput = new BufferedInputStream(_byteInput);
+                if (args.size() > 2 && _checkpoint != null) {
+                    _outputChannel =
+                        FileChannel.open(Paths.get(args.get(2)),
+                                         StandardOpenOption.WRITE,
+                                         StandardOpenOption.CREATE);
+                    _byteOutput = Channels.newOutputStream(_outputChannel);
+                } else if (args.size() > 2) {
+                    _byteOutput = Channels.newOutputStream(
+                        FileChannel.open(Paths.get(args.get(2)),
+                                         StandardOpenOption.WRITE,
+                                         StandardOpenOption.CREATE,
+                                         StandardOpenOption.TRUNCATE_EXISTING));
+                } else {
+                    _byteOutput = System.out;
+                }
+            } catch (IOException | InvalidPathException excp) {
+                throw error("could not open %s", excp.getMessage());
+            }
+            return;
+        }
+
+        if (_checkpoint != null) {
+            _input = getReader(args.get(1));
+            try {
+                _outputChannel =
+                    FileChannel.open(Paths.get(args.get(2)),
+                                     StandardOpenOption.WRITE,
+                                     StandardOpenOption.CREATE);
+                _output = Channels.newWriter(_outputChannel,
+                                             Charset.defaultCharset());
+            } catch (IOException | InvalidPathException excp) {
+                throw error("could not open %s", excp.getMessage());
+            }
+            return;
+        }
 
         if (args.size() > 1) {
-            _input = getInput(args.get(1));
+            _input = getReader(args.get(1));
         } else {
-            _input = new Scanner(System.in);
+            _input = new InputStreamReader(System.in);
         }
 
         if (args.size() > 2) {
-            _output = getOutput(args.get(2));
+            _output = getWriter(args.get(2));
         } else {
-            _output = System.out;
+            _output = new OutputStreamWriter(System.out);
         }
     }
 
+    /** A reader of the configuration file named CONFIGNAME, which is in
+     *  byte notation iff BINARY, with no input or output. */
+    private Main(String configName, boolean binary) {
+        _configName = configName;
+        _byteConfig = binary;
+    }
+
+    /** Return a machine, without rotors inserted, configured from the
+     *  configuration file named NAME. */
+    static Machine configuration(String name) {
+        return configuration(name, false);
+    }
+
+    /** Return a machine, without rotors inserted, configured from the
+     *  configuration file named NAME, which is in byte notation iff
+     *  BINARY. */
+    static Machine configuration(String name, boolean binary) {
+        return new Main(name, binary).readConfig();
+    }
+
     /** Return a Scanner reading from the file named NAME. */
     private Scanner getInput(String name) {
         try {
@@ -71,39 +242,376 @@ public final class Main {
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return a Reader reading from the channel of the file named NAME. */
+    private Reader getReader(String name) {
         try {
-            return new PrintStream(new File(name));
-        } catch (IOException excp) {
+            return Channels.newReader(FileChannel.open(Paths.get(name)),
+                                      Charset.defaultCharset());
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a Writer writing to the channel of the file named NAME. */
+    private Writer getWriter(String name) {
+        try {
+            FileChannel channel =
+                FileChannel.open(Paths.get(name), StandardOpenOption.WRITE,
+                                 StandardOpenOption.CREATE,
+                                 StandardOpenOption.TRUNCATE_EXISTING);
+            return Channels.newWriter(channel, Charset.defaultCharset());
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a Reader decoding the memory-mapped file named NAME. */
+    private Reader getMapped(String name) {
+        try {
+            return new MappedReader(Paths.get(name), Charset.defaultCharset());
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a Writer encoding into the memory-mapped file named NAME. */
+    private Writer getMappedOutput(String name) {
+        try {
+            return new MappedWriter(Paths.get(name), Charset.defaultCharset());
+        } catch (IOException | InvalidPathException excp) {
             throw error("could not open %s", name);
         }
     }
 
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
+     *  results to _output.  The input is read and processed in chunks of
+     *  BUFFER_SIZE characters (larger with --parallel), so that lines are
+     *  never held in memory whole.  Except with --mapped, or on a single
+     *  processor, reading (and decoding) the input and writing (and
+     *  encoding) the output each run on a thread of their own, connected
+     *  to the conversion by queues of up to PIPELINE_DEPTH chunks, so
+     *  that waiting for either overlaps with converting.  Conversion
+     *  stays on this thread, and so sees messages and settings lines in
+     *  order.  With --checkpoint, resume from the checkpoint if there is
+     *  one, and record checkpoints at line ends as the conversion
+     *  goes. */
     private void process() {
         Machine machine = readConfig();
-        while (_input.hasNextLine()) {
-            String temp = _input.nextLine();
-            if (temp.isBlank()) {
-                _output.println();
-                continue;
-            }
-            if (temp.charAt(0) == '*') {
-                setUp(machine, temp);
+        compile(machine);
+        AsyncTraceListener tracer = tracer(machine);
+        char[] buffer;
+        if (_parallel) {
+            buffer = new char[PARALLEL_BUFFER_SIZE];
+        } else {
+            buffer = new char[BUFFER_SIZE];
+        }
+        try {
+            long start = _checkpoint == null ? 0 : resumeText(machine);
+            if (!_mapped && Runtime.getRuntime().availableProcessors() > 1) {
+                _input = new PipelinedReader(_input, buffer.length,
+                                             PIPELINE_DEPTH);
+                _output = new PipelinedWriter(_output, BUFFER_SIZE,
+                                              PIPELINE_DEPTH);
+            }
+            MessageProcessor processor =
+                new MessageProcessor(machine, _output);
+            if (_parallel) {
+                processor.setPool(ForkJoinPool.commonPool());
+            }
+            if (_checkpoint != null) {
+                processor.setLineListener(
+                    checkpointer(machine, processor, start));
+            }
+            try {
+                for (int n = _input.read(buffer); n != -1;
+                     n = _input.read(buffer)) {
+                    processor.process(buffer, 0, n);
+                }
+                processor.finish();
+            } finally {
+                processor.flush();
+                if (_mapped) {
+                    _output.close();
+                } else {
+                    _output.flush();
+                }
+            }
+            if (_checkpoint != null) {
+                Files.deleteIfExists(Paths.get(_checkpoint));
+            }
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        } finally {
+            if (tracer != null) {
+                tracer.close();
+            }
+        }
+    }
+
+    /** Set MACHINE to use compiled tables if --compiled was specified,
+     *  taking them from a cache of up to _cacheSize megabytes, so that
+     *  settings lines repeating a key already seen reuse its table.
+     *  With --tables, the tables are mapped from files in that
+     *  directory, shared with any other process using it. */
+    private void compile(Machine machine) {
+        machine.setCompiled(_compiled);
+        if (_compiled) {
+            Path directory = null;
+            if (_tables != null) {
+                try {
+                    directory = Files.createDirectories(Paths.get(_tables));
+                } catch (IOException | InvalidPathException excp) {
+                    throw error("could not use table directory %s",
+                                _tables);
+                }
+            }
+            machine.setTableCache(new TableCache(_cacheSize << 20,
+                                                 directory));
+        }
+    }
+
+    /** If --verbose was specified, attach to MACHINE a listener printing
+     *  a trace of each conversion to the standard error, and return it;
+     *  otherwise return null.  The listener must be closed once MACHINE
+     *  is no longer in use. */
+    private AsyncTraceListener tracer(Machine machine) {
+        if (!_verbose) {
+            return null;
+        }
+        AsyncTraceListener tracer =
+            new AsyncTraceListener(machine,
+                                   new TracePrinter(_alphabet, System.err),
+                                   TRACE_CAPACITY);
+        machine.setTraceListener(tracer);
+        return tracer;
+    }
+
+    /** Configure an Enigma machine from the contents of configuration
+     *  file _config and serve sessions converting messages with copies
+     *  of it at address _serve (see EnigmaServer), closing the server
+     *  (and so removing its Unix domain socket) when the process exits. */
+    private void serve() {
+        Machine machine = readConfig();
+        compile(machine);
+        EnigmaServer server =
+            new EnigmaServer(machine, Charset.defaultCharset());
+        try {
+            server.bind(EnigmaServer.address(_serve));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException excp) {
+                    /* Exiting anyway. */
+                    return;
+                }
+            }));
+            server.serve();
+        } catch (IOException excp) {
+            throw error("could not serve at %s: %s", _serve,
+                        excp.getMessage());
+        }
+    }
+
+    /** Configure an Enigma machine over the byte alphabet from the
+     *  contents of configuration file _config, set it from the settings
+     *  line (in byte notation) that begins _byteInput, and apply it to
+     *  the remaining bytes of _byteInput, sending the results to
+     *  _byteOutput.  With --checkpoint, resume from the checkpoint if
+     *  there is one, and record checkpoints as the conversion goes. */
+    private void processBinary() {
+        Machine machine = readConfig();
+        compile(machine);
+        AsyncTraceListener tracer = tracer(machine);
+        try {
+            long[] offsets = null;
+            if (_checkpoint != null) {
+                offsets = resume(machine, CHECKPOINT_MAGIC);
+            }
+            if (offsets != null) {
+                if (offsets[0] > _inputChannel.size()) {
+                    throw error("checkpoint %s does not match the input "
+                                + "and output", _checkpoint);
+                }
+                _inputChannel.position(offsets[0]);
             } else {
-                String conv = temp;
-                String res = machine.convert(conv);
-                printMessageLine(res);
+                offsets = new long[2];
+                StringBuilder settings = new StringBuilder();
+                for (int b = _byteInput.read(); b != -1;
+                     b = _byteInput.read()) {
+                    offsets[0] += 1;
+                    if (b == '\n') {
+                        break;
+                    }
+                    settings.append((char) b);
+                }
+                String line = settings.toString().strip();
+                if (line.isEmpty() || line.charAt(0) != '*') {
+                    throw error("binary input must start with a "
+                                + "settings line");
+                }
+                setUp(machine, line);
+            }
+            InputStream in = new EnigmaInputStream(_byteInput, machine);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long saved = offsets[0];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                _byteOutput.write(buffer, 0, n);
+                offsets[0] += n;
+                offsets[1] += n;
+                if (_checkpoint != null
+                    && offsets[0] - saved >= _checkpointInterval) {
+                    saveCheckpoint(machine, offsets);
+                    saved = offsets[0];
+                }
             }
+            _byteOutput.flush();
+            if (_checkpoint != null) {
+                Files.deleteIfExists(Paths.get(_checkpoint));
+            }
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        } finally {
+            if (tracer != null) {
+                tracer.close();
+            }
+        }
+    }
+
+    /** If the checkpoint file _checkpoint exists, resume from it as
+     *  resume() does, skipping the characters of _input that it records
+     *  as converted, and return their number.  Otherwise, empty the
+     *  output and return 0. */
+    private long resumeText(Machine machine) throws IOException {
+        long[] offsets = resume(machine, TEXT_CHECKPOINT_MAGIC);
+        if (offsets == null) {
+            return 0;
+        }
+        for (long n = offsets[0]; n > 0; ) {
+            long skipped = _input.skip(n);
+            if (skipped <= 0) {
+                throw error("checkpoint %s does not match the input "
+                            + "and output", _checkpoint);
+            }
+            n -= skipped;
+        }
+        return offsets[0];
+    }
+
+    /** Return a listener that records in _checkpoint the state of
+     *  MACHINE and the positions reached, at the first line end after
+     *  each _checkpointInterval characters of input, once all the output
+     *  of PROCESSOR so far is on disk.  START is the number of characters
+     *  of input already converted when the run began.  Before the first
+     *  settings line, there is no state to record. */
+    private LineListener checkpointer(Machine machine,
+                                      MessageProcessor processor,
+                                      long start) {
+        long[] saved = { 0 };
+        return consumed -> {
+            if (consumed - saved[0] >= _checkpointInterval
+                && machine.getRotor(0) != null) {
+                processor.flush();
+                _output.flush();
+                _outputChannel.force(false);
+                long[] offsets = { start + consumed,
+                                   _outputChannel.position() };
+                writeCheckpoint(Paths.get(_checkpoint),
+                                TEXT_CHECKPOINT_MAGIC, machine, offsets);
+                saved[0] = consumed;
+            }
+        };
+    }
+
+    /** If the checkpoint file _checkpoint exists and begins with MAGIC,
+     *  put MACHINE into the state it records, move the output to the
+     *  position it records (discarding any output written after it was
+     *  saved), and return the positions it records in the input and
+     *  output.  Otherwise, empty the output and return null. */
+    private long[] resume(Machine machine, int magic) throws IOException {
+        Path file = Paths.get(_checkpoint);
+        if (!Files.exists(file)) {
+            _outputChannel.truncate(0);
+            return null;
+        }
+        DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream(Files.readAllBytes(file)));
+        long[] offsets = new long[2];
+        try {
+            if (in.readInt() != magic) {
+                throw error("%s is not a checkpoint", _checkpoint);
+            }
+            offsets[0] = in.readLong();
+            offsets[1] = in.readLong();
+            int length = in.readInt();
+            if (length < 0 || length > in.available()) {
+                throw error("checkpoint %s truncated", _checkpoint);
+            }
+            byte[] state = new byte[length];
+            in.readFully(state);
+            machine.restore(state);
+        } catch (EOFException excp) {
+            throw error("checkpoint %s truncated", _checkpoint);
+        }
+        if (offsets[0] < 0
+            || offsets[1] < 0 || offsets[1] > _outputChannel.size()) {
+            throw error("checkpoint %s does not match the input and output",
+                        _checkpoint);
+        }
+        _outputChannel.truncate(offsets[1]);
+        _outputChannel.position(offsets[1]);
+        return offsets;
+    }
+
+    /** Write all output so far to disk, then record in the checkpoint
+     *  file _checkpoint the state of MACHINE and the positions OFFSETS
+     *  reached in the input and output. */
+    private void saveCheckpoint(Machine machine, long[] offsets)
+        throws IOException {
+        _byteOutput.flush();
+        _outputChannel.force(false);
+        writeCheckpoint(Paths.get(_checkpoint), CHECKPOINT_MAGIC, machine,
+                        offsets);
+    }
+
+    /** Record in the checkpoint file FILE the state of MACHINE and the
+     *  positions OFFSETS (input, then output) that a resumed run is to
+     *  start from, marked with MAGIC (CHECKPOINT_MAGIC for --binary
+     *  runs, whose input positions are in bytes, and
+     *  TEXT_CHECKPOINT_MAGIC otherwise, whose input positions are in
+     *  characters).  The file is replaced atomically, so that a crash
+     *  leaves the old checkpoint or the new one. */
+    static void writeCheckpoint(Path file, int magic, Machine machine,
+                                long[] offsets) throws IOException {
+        file = file.toAbsolutePath();
+        byte[] state = machine.checkpoint();
+        Path temp = Files.createTempFile(file.getParent(), "checkpoint",
+                                         ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(magic);
+                out.writeLong(offsets[0]);
+                out.writeLong(offsets[1]);
+                out.writeInt(state.length);
+                out.write(state);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
         }
     }
 
     /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
+     *  file _config, or from the snapshot of one. */
     private Machine readConfig() {
+        Machine snapshot = readSnapshot();
+        if (snapshot != null) {
+            _alphabet = snapshot.alphabet();
+            return snapshot;
+        }
+        _config = getInput(_configName);
         try {
             String a = _config.next();
             if (!_config.hasNext("\\d")) {
@@ -112,7 +620,13 @@ public final class Main {
             if (a.contains("*") || a.contains("(") || a.contains(")")) {
                 throw new EnigmaException("Invalid Characters in Alphabet!");
             }
-            _alphabet = new Alphabet(a);
+            if (!_byteConfig) {
+                _alphabet = new Alphabet(a);
+            } else if (a.equals("BYTES")) {
+                _alphabet = Alphabet.bytes();
+            } else {
+                throw error("alphabet of binary configuration must be BYTES");
+            }
             if (!_config.hasNextInt()) {
                 throw new EnigmaException("Invalid Number for numRotors");
             }
@@ -144,6 +658,32 @@ public final class Main {
         }
     }
 
+    /** Return an Enigma machine configured from the file named
+     *  _configName if it is a configuration snapshot, and otherwise
+     *  null. */
+    private Machine readSnapshot() {
+        try {
+            Path file = Paths.get(_configName);
+            if (!ConfigSnapshot.isSnapshot(file)) {
+                return null;
+            }
+            return ConfigSnapshot.read(file, _byteConfig);
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not open %s", _configName);
+        }
+    }
+
+    /** Check the configuration in file _config and write a snapshot of
+     *  it to the file named _snapshot. */
+    private void compileConfig() {
+        Machine machine = readConfig();
+        try {
+            ConfigSnapshot.write(machine, _byteConfig, Paths.get(_snapshot));
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not write %s", _snapshot);
+        }
+    }
+
     /** Return a rotor, reading its description from _config. */
     private Rotor readRotor() {
         try {
@@ -167,13 +707,13 @@ public final class Main {
                 throw new EnigmaException("Incorrect Rotor Indicator "
                         + "(R, N, M only)!");
             }
-            Permutation perm = new Permutation(p, _alphabet);
+            Permutation perm = permutation(p, _alphabet);
             if (notches.charAt(0) == 'M' || notches.charAt(0) == 'm') {
-                String notch = notches.substring(1);
-                if (notch.isBlank()) {
+                if (notches.substring(1).isBlank()) {
                     throw new EnigmaException("Moving Rotors "
                             + "must have a notch");
                 }
+                String notch = characters(notches.substring(1), _alphabet);
                 return new MovingRotor(name, perm, notch);
             } else if (notches.charAt(0) == 'R' || notches.charAt(0) == 'r') {
                 return new Reflector(name, perm);
@@ -187,10 +727,12 @@ public final class Main {
     }
 
     /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment. */
-    private void setUp(Machine M, String settings) {
+     *  which must have the format specified in the assignment.  The
+     *  rotor and ring settings and the plugboard are in byte notation
+     *  iff M's alphabet is that of the byte values. */
+    static void setUp(Machine M, String settings) {
         String[] s = settings.split(" ");
-        if (s.length - 1 < M.numRotors()) {
+        if (s.length - 1 <= M.numRotors()) {
             throw new EnigmaException("Wrong Settings Config. "
                     + "Not Enough Arguments.");
         }
@@ -212,11 +754,11 @@ public final class Main {
         if (!M.getRotor(0).reflecting()) {
             throw new EnigmaException("Rotor at Pos 0 is not a reflector");
         }
-        M.setRotors(s[ind]);
+        M.setRotors(characters(s[ind], M.alphabet()));
         ind += 1;
         String ring = "";
         if (ind < s.length && s[ind].matches("\\w+")) {
-            ring = s[ind];
+            ring = characters(s[ind], M.alphabet());
             ind += 1;
         }
         M.setRing(ring);
@@ -226,59 +768,118 @@ public final class Main {
                 plug += s[i];
             }
         }
-        Permutation plugboard = new Permutation(plug, _alphabet);
+        Permutation plugboard = permutation(plug, M.alphabet());
         M.setPlugboard(plugboard);
     }
 
-    /** Return true iff verbose option specified. */
-    static boolean verbose() {
-        return _verbose;
+    /** Return the characters of ALPHABET written as TEXT in the
+     *  configuration or settings, which is in byte notation if ALPHABET
+     *  is the alphabet of byte values. */
+    private static String characters(String text, Alphabet alphabet) {
+        return alphabet.byteValues() ? ByteNotation.decode(text) : text;
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        String[] groups;
-        if (msg.length() % 5 == 0) {
-            groups = new String[Math.floorDiv(msg.length(), 5)];
-        } else {
-            groups = new String[Math.floorDiv(msg.length(), 5) + 1];
-        }
-        int indGroup = 0;
-        int indMsg = 0;
-        int len = msg.length();
-        while (len >= 5) {
-            groups[indGroup] = msg.substring(indMsg, indMsg + 5);
-            indGroup += 1;
-            indMsg += 5;
-            len -= 5;
-        }
-        if (msg.length() % 5 != 0) {
-            groups[groups.length - 1] = msg.substring(indMsg);
-        }
-        for (int i = 0; i < groups.length; i++) {
-            if (i == groups.length - 1) {
-                _output.print(groups[i]);
-            } else {
-                _output.print(groups[i] + "\s");
-            }
+    /** Return the permutation of ALPHABET written as CYCLES in the
+     *  configuration or settings, which is in byte notation if ALPHABET
+     *  is the alphabet of byte values. */
+    private static Permutation permutation(String cycles, Alphabet alphabet) {
+        if (alphabet.byteValues()) {
+            return ByteNotation.permutation(cycles, alphabet);
         }
-        _output.print("\n");
+        return new Permutation(cycles, alphabet);
     }
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
     /** Source of input messages. */
-    private Scanner _input;
+    private Reader _input;
+
+    /** Name of the configuration file or snapshot. */
+    private String _configName;
+
+    /** True iff the configuration is in byte notation. */
+    private boolean _byteConfig;
 
     /** Source of machine configuration. */
     private Scanner _config;
 
+    /** Name of the snapshot file written with --compile-config. */
+    private String _snapshot;
+
     /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    private Writer _output;
+
+    /** Source of input bytes with --binary. */
+    private InputStream _byteInput;
+
+    /** Destination of converted bytes with --binary. */
+    private OutputStream _byteOutput;
+
+    /** Channel of the input file with --binary, or null. */
+    private FileChannel _inputChannel;
+
+    /** Channel of the output file with --checkpoint, or null. */
+    private FileChannel _outputChannel;
+
+    /** Number of characters of input read at a time. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** Number of characters of input read at a time with --parallel. */
+    static final int PARALLEL_BUFFER_SIZE = 1 << 22;
+
+    /** Number of chunks of input read ahead, and of output awaiting
+     *  writing, in process(). */
+    static final int PIPELINE_DEPTH = 4;
+
+    /** Number of traces buffered for printing with --verbose. */
+    static final int TRACE_CAPACITY = 1 << 12;
+
+    /** Default number of input bytes (or characters) converted between
+     *  checkpoints. */
+    static final long DEFAULT_CHECKPOINT_INTERVAL = 1 << 24;
+
+    /** First word of a checkpoint file of a --binary run. */
+    static final int CHECKPOINT_MAGIC = 0x456e4b31;
+
+    /** First word of a checkpoint file of a text run. */
+    static final int TEXT_CHECKPOINT_MAGIC = 0x456e5431;
+
+    /** Default capacity of the table cache, in megabytes. */
+    static final long DEFAULT_CACHE_SIZE = 256;
 
     /** True if --verbose specified. */
     private static boolean _verbose;
 
+    /** True if --compiled specified. */
+    private static boolean _compiled;
+
+    /** True if --compile-config specified. */
+    private static boolean _compileConfig;
+
+    /** Directory of mapped tables (--tables), or null. */
+    private static String _tables;
+
+    /** Capacity of the table cache in megabytes (--cache). */
+    private static long _cacheSize = DEFAULT_CACHE_SIZE;
+
+    /** True if --parallel specified. */
+    private static boolean _parallel;
+
+    /** True if --mapped specified. */
+    private static boolean _mapped;
+
+    /** True if --binary specified. */
+    private static boolean _binary;
+
+    /** Address given by --serve, or null if not specified. */
+    private static String _serve;
+
+    /** Checkpoint file given by --checkpoint, or null. */
+    private static String _checkpoint;
+
+    /** Number of input bytes (characters, without --binary) converted
+     *  between checkpoints (--interval). */
+    private static long _checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
 }
@@ -0,0 +1,210 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Main class.
+ *  @author Adrian Kwan
+ */
+public class MainTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A binary configuration with a reflector R and a moving rotor S. */
+    private static final String BYTE_CONFIG = "BYTES\n2 1\n"
+        + "R R (0001) (02ff) (1080) (7f81)\n"
+        + "S M00 (0a0b0c) (2021) (4142434445)\n";
+
+    /** The settings line beginning the binary input. */
+    private static final String SETTINGS = "* R S 07";
+
+    /** Number of message bytes in the binary input. */
+    private static final int MESSAGE_LENGTH = 20000;
+
+    /** Text input to the naval machine, with a message longer than the
+     *  windows mapped by MappedReaderTest and MappedWriterTest. */
+    private static final String TEXT_INPUT =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "FROM HIS SHOULDER HIAWATHA\r\n\n"
+        + "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "QVPQS OKOIL PUBKJ ZPISF XDW\n"
+        + "TOOK THE CAMERA OF ROSEWOOD ".repeat(200) + "\n";
+
+    /** Return the text configuration of the naval machine. */
+    private static String navalConfig() {
+        StringBuilder config = new StringBuilder(UPPER_STRING)
+            .append("\n5 3\n");
+        for (String name : NAVALA.keySet()) {
+            String type;
+            if (name.equals("B") || name.equals("C")) {
+                type = "R";
+            } else if (NAVAL_NOTCHES.containsKey(name)) {
+                type = "M" + NAVAL_NOTCHES.get(name);
+            } else {
+                type = "N";
+            }
+            config.append(String.format("%s %s %s%n", name, type,
+                                        NAVALA.get(name)));
+        }
+        return config.toString();
+    }
+
+    /** Directory holding the files of a test. */
+    private Path _dir;
+
+    /** The configuration, input and reference output files. */
+    private Path _config, _input, _reference;
+
+    /** The message bytes of the input. */
+    private byte[] _message;
+
+    /** Write the configuration and input, and convert the input without
+     *  checkpoints into _reference. */
+    @Before
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("enigma");
+        _config = Files.writeString(_dir.resolve("bytes.conf"),
+                                    BYTE_CONFIG);
+        _message = new byte[MESSAGE_LENGTH];
+        new Random(42).nextBytes(_message);
+        byte[] header = (SETTINGS + "\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] input = Arrays.copyOf(header, header.length + _message.length);
+        System.arraycopy(_message, 0, input, header.length, _message.length);
+        _input = Files.write(_dir.resolve("input"), input);
+        _reference = _dir.resolve("reference");
+        Main.main("--binary", _config.toString(), _input.toString(),
+                  _reference.toString());
+    }
+
+    /** Remove the files of the test. */
+    @After
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(_dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(_dir);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testCheckpointedRun() throws IOException {
+        Path output = _dir.resolve("output");
+        Path checkpoint = _dir.resolve("checkpoint");
+        Main.main("--binary", "--checkpoint=" + checkpoint, "--interval=1000",
+                  _config.toString(), _input.toString(), output.toString());
+        assertArrayEquals(Files.readAllBytes(_reference),
+                          Files.readAllBytes(output));
+        assertFalse(Files.exists(checkpoint));
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        int done = 7000;
+        Machine machine = Main.configuration(_config.toString(), true);
+        Main.setUp(machine, SETTINGS);
+        byte[] partial = new byte[done + 500];
+        for (int i = 0; i < done; i += 1) {
+            partial[i] = (byte) machine.convert(_message[i] & 0xff);
+        }
+        Arrays.fill(partial, done, partial.length, (byte) '?');
+        Path output = Files.write(_dir.resolve("output"), partial);
+        Path checkpoint = _dir.resolve("checkpoint");
+        long header = SETTINGS.length() + 1;
+        Main.writeCheckpoint(checkpoint, Main.CHECKPOINT_MAGIC, machine,
+                             new long[] { header + done, done });
+        Main.main("--binary", "--checkpoint=" + checkpoint,
+                  _config.toString(), _input.toString(), output.toString());
+        assertArrayEquals(Files.readAllBytes(_reference),
+                          Files.readAllBytes(output));
+        assertFalse(Files.exists(checkpoint));
+    }
+
+    @Test
+    public void testTextCheckpointedRun() throws IOException {
+        Path config = Files.writeString(_dir.resolve("naval.conf"),
+                                        navalConfig());
+        Path input = Files.writeString(_dir.resolve("text"), TEXT_INPUT);
+        Path reference = _dir.resolve("reference.txt");
+        Path output = _dir.resolve("output.txt");
+        Path checkpoint = _dir.resolve("checkpoint");
+        Main.main(config.toString(), input.toString(), reference.toString());
+        Main.main("--checkpoint=" + checkpoint, "--interval=10",
+                  config.toString(), input.toString(), output.toString());
+        assertArrayEquals(Files.readAllBytes(reference),
+                          Files.readAllBytes(output));
+        assertFalse(Files.exists(checkpoint));
+    }
+
+    @Test
+    public void testTextResume() throws IOException {
+        Path config = Files.writeString(_dir.resolve("naval.conf"),
+                                        navalConfig());
+        Path input = Files.writeString(_dir.resolve("text"), TEXT_INPUT);
+        Path reference = _dir.resolve("reference.txt");
+        Main.main(config.toString(), input.toString(), reference.toString());
+        String settings = TEXT_INPUT.substring(0, TEXT_INPUT.indexOf('\n'));
+        Machine machine = Main.configuration(config.toString());
+        Main.setUp(machine, settings);
+        machine.convert("FROMHISSHOULDERHIAWATHA");
+        String done = "QVPQS OKOIL PUBKJ ZPISF XDW\n";
+        Path output = Files.writeString(_dir.resolve("output.txt"),
+                                        done + "?????");
+        Path checkpoint = _dir.resolve("checkpoint");
+        long consumed = settings.length() + 1
+            + "FROM HIS SHOULDER HIAWATHA\r\n".length();
+        Main.writeCheckpoint(checkpoint, Main.TEXT_CHECKPOINT_MAGIC, machine,
+                             new long[] { consumed, done.length() });
+        Main.main("--checkpoint=" + checkpoint, config.toString(),
+                  input.toString(), output.toString());
+        assertArrayEquals(Files.readAllBytes(reference),
+                          Files.readAllBytes(output));
+        assertFalse(Files.exists(checkpoint));
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        Path config = Files.writeString(_dir.resolve("naval.conf"),
+                                        navalConfig());
+        Path input = Files.writeString(_dir.resolve("text"), TEXT_INPUT);
+        Path streamed = _dir.resolve("streamed");
+        Path mapped = Files.writeString(_dir.resolve("mapped"),
+                                        TEXT_INPUT + TEXT_INPUT);
+        Main.main(config.toString(), input.toString(), streamed.toString());
+        Main.main("--mapped", config.toString(), input.toString(),
+                  mapped.toString());
+        assertTrue(Files.size(streamed) > TEXT_INPUT.length() / 2);
+        assertArrayEquals(Files.readAllBytes(streamed),
+                          Files.readAllBytes(mapped));
+    }
+
+    @Test
+    public void testSettingsNotation() {
+        Machine text = new Machine(UPPER, 5, 3, navalRotors().values());
+        Main.setUp(text, "* B Beta III IV I AXLE (HQ) (EX)");
+        assertEquals("AXLE", text.stateAt(0));
+        Machine bytes = Main.configuration(_config.toString(), true);
+        Main.setUp(bytes, SETTINGS);
+        assertEquals(ByteNotation.decode("07"), bytes.stateAt(0));
+    }
+
+}
@@ -0,0 +1,115 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** A Reader that decodes the text of a file directly from memory-mapped
+ *  windows onto it, so that the file is paged in by the operating system
+ *  rather than copied through a stream.
+ *  @author Adrian Kwan
+ */
+class MappedReader extends Reader {
+
+    /** A reader of the text of FILE, encoded in CHARSET. */
+    MappedReader(Path file, Charset charset) throws IOException {
+        this(file, charset, WINDOW);
+    }
+
+    /** A reader of the text of FILE, encoded in CHARSET, mapping at most
+     *  WINDOW bytes at once. */
+    MappedReader(Path file, Charset charset, long window)
+        throws IOException {
+        _window = window;
+        _channel = FileChannel.open(file, StandardOpenOption.READ);
+        _size = _channel.size();
+        _decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        map(0);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (_pending.hasRemaining()) {
+            cbuf[off] = _pending.get();
+            return 1;
+        }
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (out.position() == off) {
+            if (_flushed) {
+                return -1;
+            }
+            boolean last = _base + _bytes.limit() == _size;
+            CoderResult result = _decoder.decode(_bytes, out, last);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (out.position() > off) {
+                break;
+            } else if (result.isOverflow()) {
+                _pending.clear();
+                _decoder.decode(_bytes, _pending, last);
+                _pending.flip();
+                out.put(_pending.get());
+            } else if (!last) {
+                map(_base + _bytes.position());
+            } else {
+                _decoder.flush(out);
+                _flushed = true;
+            }
+        }
+        return out.position() - off;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    /** Map the window of my file starting at byte POS. */
+    private void map(long pos) throws IOException {
+        _base = pos;
+        _bytes = _channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                              Math.min(_window, _size - pos));
+    }
+
+    /** Default largest number of bytes mapped at once. */
+    static final long WINDOW = 1 << 28;
+
+    /** Largest number of bytes mapped at once by this reader. */
+    private final long _window;
+
+    /** The file's channel. */
+    private final FileChannel _channel;
+
+    /** Size of the file in bytes. */
+    private final long _size;
+
+    /** Decoder for the file's text. */
+    private final CharsetDecoder _decoder;
+
+    /** The second half of a surrogate pair decoded when there was room
+     *  only for the first, held for the next read. */
+    private final CharBuffer _pending = CharBuffer.allocate(2).flip();
+
+    /** The current window. */
+    private ByteBuffer _bytes;
+
+    /** Position in the file of the start of _bytes. */
+    private long _base;
+
+    /** True iff the decoder has been flushed at the end of the file. */
+    private boolean _flushed;
+}
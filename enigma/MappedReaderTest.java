@@ -0,0 +1,93 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the MappedReader class.
+ *  @author Adrian Kwan
+ */
+public class MappedReaderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Text whose UTF-8 encoding has characters of one to four bytes, so
+     *  that small windows end within characters. */
+    static final String TEXT =
+        "* B Beta III IV I AXLE (HQ) (EX)\n"
+        + "caf\u00e9 \u20ac5 \ud834\udd1e\ud834\udd1e clef\r\n"
+        + "\u00e9\u00e9\u20ac\u20ac\ud834\udd1e FROM HIS SHOULDER\n";
+
+    /** Window sizes to try, all at least as long as the longest encoded
+     *  character. */
+    static final int[] WINDOWS = { 4, 5, 7, 16, 1 << 20 };
+
+    /** The file holding the text of a test. */
+    private Path _file;
+
+    /** Write TEXT to _file. */
+    @Before
+    public void setUp() throws IOException {
+        _file = Files.createTempFile("enigma", ".txt");
+        Files.writeString(_file, TEXT, StandardCharsets.UTF_8);
+    }
+
+    /** Remove _file. */
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(_file);
+    }
+
+    /** Return all the text read from IN in reads of at most SIZE
+     *  characters. */
+    private String readAll(Reader in, int size) throws IOException {
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[size];
+        for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+            result.append(buffer, 0, n);
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testWindows() throws IOException {
+        for (int window : WINDOWS) {
+            for (int size = 1; size <= 8; size += 1) {
+                try (Reader in = new MappedReader(_file,
+                                                  StandardCharsets.UTF_8,
+                                                  window)) {
+                    assertEquals(msg("windows", "window %d, size %d",
+                                     window, size),
+                                 TEXT, readAll(in, size));
+                    assertEquals(-1, in.read());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Files.write(_file, new byte[0]);
+        try (Reader in = new MappedReader(_file, StandardCharsets.UTF_8,
+                                          4)) {
+            assertEquals("", readAll(in, 3));
+        }
+    }
+
+}
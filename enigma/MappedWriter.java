@@ -0,0 +1,123 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** A Writer that encodes text directly into memory-mapped windows onto a
+ *  file.  Each window extends the file as it is mapped; closing the
+ *  writer trims the file back to the text actually written, so it must
+ *  be closed even when writing fails.
+ *  @author Adrian Kwan
+ */
+class MappedWriter extends Writer {
+
+    /** A writer replacing the contents of FILE with text encoded in
+     *  CHARSET. */
+    MappedWriter(Path file, Charset charset) throws IOException {
+        this(file, charset, WINDOW);
+    }
+
+    /** A writer replacing the contents of FILE with text encoded in
+     *  CHARSET, mapping WINDOW bytes at once. */
+    MappedWriter(Path file, Charset charset, long window)
+        throws IOException {
+        _window = window;
+        _channel = FileChannel.open(file, StandardOpenOption.READ,
+                                    StandardOpenOption.WRITE,
+                                    StandardOpenOption.CREATE,
+                                    StandardOpenOption.TRUNCATE_EXISTING);
+        _encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _pending = CharBuffer.allocate(2);
+        map(0);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (_pending.position() > 0 && len > 0) {
+            _pending.put(cbuf[off]);
+            off += 1;
+            len -= 1;
+            _pending.flip();
+            encode(_pending, false);
+            _pending.compact();
+        }
+        CharBuffer in = CharBuffer.wrap(cbuf, off, len);
+        encode(in, false);
+        _pending.put(in);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!_channel.isOpen()) {
+            return;
+        }
+        try {
+            _pending.flip();
+            encode(_pending, true);
+            while (_encoder.flush(_bytes).isOverflow()) {
+                map(_base + _bytes.position());
+            }
+            _channel.truncate(_base + _bytes.position());
+        } finally {
+            _channel.close();
+        }
+    }
+
+    /** Encode IN into my windows, mapping new ones as they fill.  LAST
+     *  is true iff IN ends the text. */
+    private void encode(CharBuffer in, boolean last) throws IOException {
+        while (true) {
+            CoderResult result = _encoder.encode(in, _bytes, last);
+            if (result.isOverflow()) {
+                map(_base + _bytes.position());
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                return;
+            }
+        }
+    }
+
+    /** Map the window of my file starting at byte POS. */
+    private void map(long pos) throws IOException {
+        _base = pos;
+        _bytes = _channel.map(FileChannel.MapMode.READ_WRITE, pos, _window);
+    }
+
+    /** Default number of bytes mapped at once. */
+    static final long WINDOW = 1 << 26;
+
+    /** Number of bytes mapped at once by this writer. */
+    private final long _window;
+
+    /** The file's channel. */
+    private final FileChannel _channel;
+
+    /** Encoder for the text. */
+    private final CharsetEncoder _encoder;
+
+    /** Characters (the first half of a surrogate pair) held back until
+     *  the next write. */
+    private final CharBuffer _pending;
+
+    /** The current window. */
+    private MappedByteBuffer _bytes;
+
+    /** Position in the file of the start of _bytes. */
+    private long _base;
+}
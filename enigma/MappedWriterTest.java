@@ -0,0 +1,101 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+import static enigma.MappedReaderTest.TEXT;
+import static enigma.MappedReaderTest.WINDOWS;
+
+/** The suite of all JUnit tests for the MappedWriter class.
+ *  @author Adrian Kwan
+ */
+public class MappedWriterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The file written by a test. */
+    private Path _file;
+
+    /** Create _file, longer than anything a test writes to it. */
+    @Before
+    public void setUp() throws IOException {
+        _file = Files.createTempFile("enigma", ".txt");
+        Files.writeString(_file, TEXT + TEXT + TEXT, StandardCharsets.UTF_8);
+    }
+
+    /** Remove _file. */
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(_file);
+    }
+
+    /** Write TEXT to _file in pieces of SIZE characters through windows of
+     *  WINDOW bytes. */
+    private void writeAll(int size, long window) throws IOException {
+        try (Writer out = new MappedWriter(_file, StandardCharsets.UTF_8,
+                                           window)) {
+            for (int k = 0; k < TEXT.length(); k += size) {
+                out.write(TEXT, k, Math.min(size, TEXT.length() - k));
+            }
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testWindows() throws IOException {
+        for (int window : WINDOWS) {
+            for (int size = 1; size <= 8; size += 1) {
+                writeAll(size, window);
+                assertEquals(msg("windows", "window %d, size %d",
+                                 window, size),
+                             TEXT, Files.readString(_file,
+                                                    StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void testTruncate() throws IOException {
+        long window = 1 << 20;
+        Writer out = new MappedWriter(_file, StandardCharsets.UTF_8, window);
+        out.write("caf\u00e9");
+        assertEquals(window, Files.size(_file));
+        out.close();
+        assertEquals(5, Files.size(_file));
+        out.close();
+        assertEquals(5, Files.size(_file));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        new MappedWriter(_file, StandardCharsets.UTF_8, 4).close();
+        assertEquals(0, Files.size(_file));
+    }
+
+    @Test
+    public void testSplitSurrogate() throws IOException {
+        try (Writer out = new MappedWriter(_file, StandardCharsets.UTF_8,
+                                           4)) {
+            out.write("A\ud834");
+            out.write("\udd1eB");
+        }
+        assertArrayEquals("A\ud834\udd1eB".getBytes(StandardCharsets.UTF_8),
+                          Files.readAllBytes(_file));
+    }
+
+}
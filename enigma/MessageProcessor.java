@@ -0,0 +1,259 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+/** Applies an Enigma machine to text in the format of the input to Main:
+ *  lines starting with '*' give new settings for the machine, and any
+ *  other line is a message, which is converted and written out in groups
+ *  of five characters.  Text may be supplied in chunks that split lines
+ *  anywhere.  Message lines are converted as they arrive, so no line is
+ *  ever held in memory whole.
+ *  @author Adrian Kwan
+ */
+class MessageProcessor {
+
+    /** A processor that converts messages with MACHINE and writes the
+     *  results to OUTPUT. */
+    MessageProcessor(Machine machine, Writer output) {
+        _machine = machine;
+        _output = output;
+        _converted = new char[BUFFER_SIZE];
+        _buffer = new char[BUFFER_SIZE];
+        _lineStart = true;
+        _blank = true;
+    }
+
+    /** Use POOL, if not null, to convert long stretches of message text
+     *  in parallel (see Machine.convert(CharSequence, ForkJoinPool)). */
+    void setPool(ForkJoinPool pool) {
+        _pool = pool;
+    }
+
+    /** Report the end of each line to LISTENER, if not null. */
+    void setLineListener(LineListener listener) {
+        _listener = listener;
+    }
+
+    /** Process the LEN characters of TEXT starting at OFF, which continue
+     *  the text processed so far. */
+    void process(char[] text, int off, int len) throws IOException {
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            if (_skipNewline) {
+                _skipNewline = false;
+                if (text[i] == '\n') {
+                    i += 1;
+                }
+                lineEnded(i - off);
+                continue;
+            }
+            int j = i;
+            while (j < end && !isLineEnd(text[j])) {
+                j += 1;
+            }
+            if (j > i) {
+                if (_lineStart && text[i] == '*') {
+                    _settings = new StringBuilder();
+                }
+                _lineStart = false;
+                if (_settings != null) {
+                    _settings.append(text, i, j - i);
+                } else {
+                    convert(text, i, j - i);
+                }
+            }
+            if (j < end) {
+                endLine();
+                _skipNewline = text[j] == '\r';
+                j += 1;
+                if (!_skipNewline) {
+                    lineEnded(j - off);
+                }
+            }
+            i = j;
+        }
+        _consumed += len;
+    }
+
+    /** Finish processing at the end of the input, treating any
+     *  unterminated last line as a complete line, and flush all output
+     *  to the writer. */
+    void finish() throws IOException {
+        if (!_lineStart) {
+            endLine();
+        }
+        flush();
+    }
+
+    /** Write all buffered output to the writer (without flushing the
+     *  writer itself). */
+    void flush() throws IOException {
+        _output.write(_buffer, 0, _used);
+        _used = 0;
+    }
+
+    /** Return true iff CH ends a line (as for Scanner.nextLine). */
+    private static boolean isLineEnd(char ch) {
+        return ch == '\n' || ch == '\r' || ch == '\u2028' || ch == '\u2029'
+            || ch == '\u0085';
+    }
+
+    /** Convert and write the LEN message characters of TEXT starting at
+     *  OFF.  A surrogate pair split between this and the next piece of
+     *  text is held back until its second half arrives. */
+    private void convert(char[] text, int off, int len) throws IOException {
+        for (int k = off; _blank && k < off + len; k += 1) {
+            _blank = Character.isWhitespace(text[k]);
+        }
+        if (_high != 0) {
+            char[] pair = { _high, text[off] };
+            _high = 0;
+            convertPiece(pair, 0, 2);
+            off += 1;
+            len -= 1;
+        }
+        if (len > 0 && Character.isHighSurrogate(text[off + len - 1])) {
+            _high = text[off + len - 1];
+            len -= 1;
+        }
+        convertPiece(text, off, len);
+    }
+
+    /** Convert and write the LEN message characters of TEXT starting at
+     *  OFF, which do not end in the middle of a surrogate pair. */
+    private void convertPiece(char[] text, int off, int len)
+        throws IOException {
+        if (_pool != null && len >= 2 * Machine.SEGMENT) {
+            String result =
+                _machine.convert(CharBuffer.wrap(text, off, len), _pool);
+            for (int k = 0; k < result.length(); k += 1) {
+                putGrouped(result.charAt(k));
+            }
+            return;
+        }
+        int limit = _machine.alphabet().basic()
+            ? _converted.length : _converted.length / 2;
+        for (int k = off; k < off + len; ) {
+            int piece = Math.min(limit, off + len - k);
+            if (k + piece < off + len
+                && Character.isHighSurrogate(text[k + piece - 1])) {
+                piece -= 1;
+            }
+            int n = _machine.convert(text, k, piece, _converted);
+            for (int m = 0; m < n; m += 1) {
+                putGrouped(_converted[m]);
+            }
+            k += piece;
+        }
+    }
+
+    /** Report to my listener, if any, the end of a line after the
+     *  first END characters of the text being processed. */
+    private void lineEnded(int end) throws IOException {
+        if (_listener != null) {
+            _listener.lineEnded(_consumed + end);
+        }
+    }
+
+    /** Complete the current line: apply it to the machine if it is a
+     *  settings line and otherwise end its output. */
+    private void endLine() throws IOException {
+        _high = 0;
+        if (_settings != null) {
+            String settings = _settings.toString();
+            _settings = null;
+            Main.setUp(_machine, settings);
+        } else if (_blank) {
+            String sep = System.lineSeparator();
+            for (int k = 0; k < sep.length(); k += 1) {
+                put(sep.charAt(k));
+            }
+        } else {
+            put('\n');
+        }
+        _group = 0;
+        _blank = true;
+        _lineStart = true;
+    }
+
+    /** Write the converted character CH to the current line, starting a
+     *  new group first if the current one is full.  The second half of a
+     *  surrogate pair goes into the same group as the first. */
+    private void putGrouped(char ch) throws IOException {
+        if (Character.isLowSurrogate(ch)) {
+            put(ch);
+            return;
+        }
+        if (_group == GROUP_SIZE) {
+            put(' ');
+            _group = 0;
+        }
+        put(ch);
+        _group += 1;
+    }
+
+    /** Write CH to the output buffer. */
+    private void put(char ch) throws IOException {
+        if (_used == _buffer.length) {
+            flush();
+        }
+        _buffer[_used] = ch;
+        _used += 1;
+    }
+
+    /** Number of characters in an output group. */
+    static final int GROUP_SIZE = 5;
+
+    /** Size of the conversion and output buffers. */
+    static final int BUFFER_SIZE = 1 << 13;
+
+    /** The machine converting messages. */
+    private final Machine _machine;
+
+    /** Destination of the output. */
+    private final Writer _output;
+
+    /** Pool for parallel conversion, or null. */
+    private ForkJoinPool _pool;
+
+    /** Receiver of line ends, or null. */
+    private LineListener _listener;
+
+    /** Number of characters processed before the current piece of
+     *  text. */
+    private long _consumed;
+
+    /** Converted characters not yet grouped. */
+    private final char[] _converted;
+
+    /** Output not yet written to _output. */
+    private final char[] _buffer;
+
+    /** Number of characters in _buffer. */
+    private int _used;
+
+    /** The settings line read so far, or null if the current line is not
+     *  a settings line. */
+    private StringBuilder _settings;
+
+    /** Number of characters in the last output group of the line. */
+    private int _group;
+
+    /** True iff nothing of the current line has been read. */
+    private boolean _lineStart;
+
+    /** True iff the current line contains only whitespace so far. */
+    private boolean _blank;
+
+    /** The first half of a surrogate pair whose second half has not yet
+     *  been read, or 0. */
+    private char _high;
+
+    /** True iff the last line ended with '\r', so that a following
+     *  '\n' belongs to the same line end. */
+    private boolean _skipNewline;
+}
@@ -0,0 +1,161 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the MessageProcessor class.
+ *  @author Adrian Kwan
+ */
+public class MessageProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A settings line for the five-slot naval machine. */
+    private static final String SETTINGS =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    /** Input with settings lines, blank lines, each kind of line end, a
+     *  '*' within a message, and an unterminated last line. */
+    private static final String INPUT = SETTINGS + "\r\n"
+        + "FROM HIS SHOULDER HIAWATHA\r\n"
+        + "\r\n"
+        + "   \n"
+        + "TOOK THE CAMERA\rOF ROSEWOOD\n\n"
+        + "* C Gamma I VIII VI BRUH\n"
+        + "MADE OF SLIDING * FOLDING ROSEWOOD\r\r\n"
+        + SETTINGS + "\n"
+        + "QVPQS OKOIL PUBKJ ZPISF XDW";
+
+    /** Return a five-slot machine with the naval rotors, set up by
+     *  SETTINGS. */
+    private Machine machine() {
+        Machine mach = new Machine(UPPER, 5, 3, navalRotors().values());
+        Main.setUp(mach, SETTINGS);
+        return mach;
+    }
+
+    /** Return the output of a processor using MACH for INPUT, supplied in
+     *  chunks of SIZE characters, with the conversion of long stretches
+     *  divided among the threads of POOL if it is not null. */
+    private String process(Machine mach, String input, int size,
+                           ForkJoinPool pool) throws IOException {
+        StringWriter output = new StringWriter();
+        MessageProcessor processor = new MessageProcessor(mach, output);
+        processor.setPool(pool);
+        char[] text = input.toCharArray();
+        for (int k = 0; k < text.length; k += size) {
+            processor.process(text, k, Math.min(size, text.length - k));
+        }
+        processor.finish();
+        return output.toString();
+    }
+
+    /** Assert that INPUT gives the same output from MACH (copied for
+     *  each run) in chunks of every size as in a single chunk, and return
+     *  that output. */
+    private String checkChunks(Machine mach, String input)
+        throws IOException {
+        String whole = process(mach.copy(), input, input.length(), null);
+        for (int size = 1; size < input.length(); size += 1) {
+            assertEquals(msg("chunks", "size %d", size), whole,
+                         process(mach.copy(), input, size, null));
+        }
+        return whole;
+    }
+
+    /** Return the conversion of MSG by MACH in groups of five, ending
+     *  with a newline. */
+    private String grouped(Machine mach, String msg) {
+        String result = mach.convert(msg);
+        StringBuilder line = new StringBuilder();
+        int[] chars = result.codePoints().toArray();
+        for (int k = 0; k < chars.length; k += 1) {
+            if (k > 0 && k % MessageProcessor.GROUP_SIZE == 0) {
+                line.append(' ');
+            }
+            line.appendCodePoint(chars[k]);
+        }
+        return line.append('\n').toString();
+    }
+
+    /** Return a two-rotor machine over an alphabet of letters and
+     *  characters outside the Basic Multilingual Plane. */
+    private Machine astralMachine() {
+        Alphabet astral =
+            new Alphabet("AB\ud83c\udf00\ud83c\udf01C\ud801\udc00");
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation(
+            "(A\ud801\udc00) (B\ud83c\udf01) (\ud83c\udf00C)", astral)));
+        rotors.add(new MovingRotor("S", new Permutation(
+            "(AB\ud83c\udf00) (\ud83c\udf01C)", astral), "\ud83c\udf00"));
+        return new Machine(astral, 2, 1, rotors);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testOutput() throws IOException {
+        String sep = System.lineSeparator();
+        Machine mach = machine();
+        String expected = grouped(mach, "FROMHISSHOULDERHIAWATHA")
+            + sep + sep
+            + grouped(mach, "TOOKTHECAMERA")
+            + grouped(mach, "OFROSEWOOD")
+            + sep;
+        Main.setUp(mach, "* C Gamma I VIII VI BRUH");
+        expected += grouped(mach, "MADEOFSLIDINGFOLDINGROSEWOOD")
+            + sep
+            + "FROMH ISSHO ULDER HIAWA THA\n";
+        assertEquals(expected,
+                     process(machine(), INPUT, INPUT.length(), null));
+    }
+
+    @Test
+    public void testChunks() throws IOException {
+        checkChunks(machine(), INPUT);
+    }
+
+    @Test
+    public void testSupplementaryChunks() throws IOException {
+        String input = "* R S \ud83c\udf01\r\n"
+            + "AB \ud83c\udf00C\ud801\udc00 \ud83c\udf01AAB\r\n"
+            + "\ud83c\udf00\ud83c\udf00\ud83c\udf00\ud83c\udf00"
+            + "\ud83c\udf00\ud83c\udf00\ud83c\udf00\n";
+        String output = checkChunks(astralMachine(), input);
+        Machine mach = astralMachine();
+        Main.setUp(mach, "* R S \ud83c\udf01");
+        String first = grouped(mach, "AB\ud83c\udf00C\ud801\udc00"
+                               + "\ud83c\udf01AAB");
+        assertTrue(output.startsWith(first));
+    }
+
+    @Test
+    public void testParallelChunks() throws IOException {
+        StringBuilder input = new StringBuilder(SETTINGS).append('\n');
+        for (int k = 0; k < 3 * Machine.SEGMENT; k += 1) {
+            input.append((char) ('A' + k % 26));
+        }
+        input.append('\n').append(SETTINGS).append("\nAB\n");
+        String text = input.toString();
+        String expected = process(machine(), text, text.length(), null);
+        int[] sizes = { text.length(), 2 * Machine.SEGMENT + 1, 100000 };
+        for (int size : sizes) {
+            assertEquals(expected, process(machine(), text, size,
+                                           ForkJoinPool.commonPool()));
+        }
+    }
+
+}
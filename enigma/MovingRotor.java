@@ -19,11 +19,13 @@ class MovingRotor extends Rotor {
 
     @Override
     boolean atNotch() {
-        char c = this.permutation().alphabet().toChar(this.setting());
-        for (char ch: _notches.toCharArray()) {
+        int c = this.permutation().alphabet().codePoint(this.setting());
+        for (int i = 0; i < _notches.length(); ) {
+            int ch = _notches.codePointAt(i);
             if (ch == c) {
                 return true;
             }
+            i += Character.charCount(ch);
         }
         return false;
     }
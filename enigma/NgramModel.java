@@ -0,0 +1,191 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** The log-likelihoods of the n-grams (sequences of n characters) of a
+ *  language over some alphabet, for scoring candidate decryptions.  The
+ *  n-grams are numbered by reading their characters' indices as numbers
+ *  in base size(), and the table of log-likelihoods is a single buffer of
+ *  floats, which may be memory-mapped from a file written by save().
+ *  @author Adrian Kwan
+ */
+class NgramModel {
+
+    /** The largest number of n-grams a model may have. */
+    static final int MAX_NGRAMS = 1 << 28;
+
+    /** A model of N-grams over an alphabet of SIZE characters, whose
+     *  log-likelihoods are the first SIZE**N floats of TABLE. */
+    NgramModel(int size, int n, FloatBuffer table) {
+        int count = SubstitutionTable.numStates(size, n);
+        if (n <= 0 || count < 0 || count > MAX_NGRAMS) {
+            throw error("bad n-gram model size");
+        }
+        if (table.capacity() < count) {
+            throw error("n-gram table too short");
+        }
+        _size = size;
+        _n = n;
+        _count = count;
+        _prefixes = count / size;
+        _table = table;
+    }
+
+    /** Return a model of N-grams over ALPHABET trained on the text read
+     *  from CORPUS.  Letters not in ALPHABET are taken in upper case if
+     *  that is in ALPHABET; other characters are skipped.  Each n-gram's
+     *  log-likelihood is the base-10 logarithm of its frequency, counting
+     *  unseen n-grams as occurring half a time. */
+    static NgramModel train(Reader corpus, Alphabet alphabet, int n)
+        throws IOException {
+        int size = alphabet.size();
+        int count = SubstitutionTable.numStates(size, n);
+        if (n <= 0 || count < 0 || count > MAX_NGRAMS) {
+            throw error("bad n-gram model size");
+        }
+        long[] counts = new long[count];
+        int prefixes = count / size;
+        long total = 0;
+        int index = 0;
+        int seen = 0;
+        char[] buffer = new char[BUFFER_SIZE];
+        int high = 0;
+        for (int len = corpus.read(buffer); len != -1;
+             len = corpus.read(buffer)) {
+            for (int i = 0; i < len; i += 1) {
+                int ch = buffer[i];
+                if (Character.isHighSurrogate(buffer[i])) {
+                    high = buffer[i];
+                    continue;
+                } else if (high != 0 && Character.isLowSurrogate(buffer[i])) {
+                    ch = Character.toCodePoint((char) high, buffer[i]);
+                }
+                high = 0;
+                int c = alphabet.indexOf(ch);
+                if (c < 0) {
+                    c = alphabet.indexOf(Character.toUpperCase(ch));
+                }
+                if (c < 0) {
+                    continue;
+                }
+                index = (index % prefixes) * size + c;
+                seen += 1;
+                if (seen >= n) {
+                    counts[index] += 1;
+                    total += 1;
+                }
+            }
+        }
+        float[] table = new float[count];
+        double norm = Math.log10(total + count / 2.0);
+        for (int i = 0; i < count; i += 1) {
+            double k = counts[i] == 0 ? 0.5 : counts[i];
+            table[i] = (float) (Math.log10(k) - norm);
+        }
+        return new NgramModel(size, n, FloatBuffer.wrap(table));
+    }
+
+    /** Return the model saved by save() in the file named FILE, mapping
+     *  the file into memory rather than reading it. */
+    static NgramModel map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer data =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC) {
+                throw error("%s is not an n-gram model", file);
+            }
+            int size = data.getInt();
+            int n = data.getInt();
+            return new NgramModel(size, n, data.slice().asFloatBuffer());
+        }
+    }
+
+    /** Write me to the file named FILE, in the form read by map(). */
+    void save(Path file) throws IOException {
+        try (FileChannel channel =
+             FileChannel.open(file, StandardOpenOption.WRITE,
+                              StandardOpenOption.CREATE,
+                              StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(_size).putInt(_n).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            ByteBuffer data = ByteBuffer.allocate(BUFFER_SIZE * Float.BYTES);
+            for (int i = 0; i < _count; ) {
+                data.clear();
+                FloatBuffer floats = data.asFloatBuffer();
+                int len = Math.min(BUFFER_SIZE, _count - i);
+                for (int k = 0; k < len; k += 1) {
+                    floats.put(_table.get(i + k));
+                }
+                data.limit(len * Float.BYTES);
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                i += len;
+            }
+        }
+    }
+
+    /** Return the size of my alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the length of my n-grams. */
+    int n() {
+        return _n;
+    }
+
+    /** Return the log-likelihood of the n-gram numbered INDEX. */
+    float logLikelihood(int index) {
+        return _table.get(index);
+    }
+
+    /** Return the sum of the log-likelihoods of the n-grams of the first
+     *  LEN characters of TEXT, given as alphabet indices. */
+    double score(int[] text, int len) {
+        double result = 0;
+        int index = 0;
+        for (int i = 0; i < len; i += 1) {
+            index = (index % _prefixes) * _size + text[i];
+            if (i >= _n - 1) {
+                result += _table.get(index);
+            }
+        }
+        return result;
+    }
+
+    /** Identifies a file written by save(). */
+    private static final int MAGIC = 0x456e4731;
+
+    /** Length of the header of a saved model: MAGIC, size and n. */
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    /** Size of the buffers used to read and write. */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Length of the n-grams. */
+    private final int _n;
+
+    /** Number of n-grams. */
+    private final int _count;
+
+    /** Number of (n-1)-grams. */
+    private final int _prefixes;
+
+    /** Log-likelihood of each n-gram. */
+    private final FloatBuffer _table;
+}
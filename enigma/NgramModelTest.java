@@ -0,0 +1,87 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the NgramModel class.
+ *  @author Adrian Kwan
+ */
+public class NgramModelTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Tolerance of comparisons of log-likelihoods. */
+    private static final double DELTA = 1e-6;
+
+    /** Alphabet of the models tested. */
+    private final Alphabet _abc = new Alphabet("ABC");
+
+    /** Return a bigram model over _abc trained on CORPUS. */
+    private NgramModel train(String corpus) throws IOException {
+        return NgramModel.train(new StringReader(corpus), _abc, 2);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testTrain() throws IOException {
+        NgramModel model = train("ab, a-B; cab!");
+        assertEquals(3, model.size());
+        assertEquals(2, model.n());
+        double norm = Math.log10(6 + 9 / 2.0);
+        assertEquals(Math.log10(3) - norm, model.logLikelihood(1), DELTA);
+        assertEquals(Math.log10(1) - norm, model.logLikelihood(3), DELTA);
+        assertEquals(Math.log10(0.5) - norm, model.logLikelihood(0), DELTA);
+    }
+
+    @Test
+    public void testScore() throws IOException {
+        NgramModel model = train("ABABCAB");
+        int[] text = { 0, 1, 2, 0 };
+        assertEquals(model.logLikelihood(1) + model.logLikelihood(5),
+                     model.score(text, 3), DELTA);
+        assertEquals(0, model.score(text, 1), DELTA);
+    }
+
+    @Test
+    public void testSaveAndMap() throws IOException {
+        NgramModel model = train("ABABCAB");
+        Path file = Files.createTempFile("ngrams", ".model");
+        try {
+            model.save(file);
+            NgramModel mapped = NgramModel.map(file);
+            assertEquals(model.size(), mapped.size());
+            assertEquals(model.n(), mapped.n());
+            for (int i = 0; i < 9; i += 1) {
+                assertEquals(model.logLikelihood(i), mapped.logLikelihood(i),
+                             0);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNotAModel() throws IOException {
+        Path file = Files.createTempFile("ngrams", ".model");
+        try {
+            Files.writeString(file, UPPER_STRING);
+            NgramModel.map(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
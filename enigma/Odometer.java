@@ -0,0 +1,232 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** The stepping rules of the rotors in a machine, expressed as a function
+ *  of their settings alone.  Settings are passed around as arrays indexed
+ *  like the rotor slots of the machine, with slot 0 for the reflector.
+ *  The notches of each rotor are held as a bitmask over its positions,
+ *  so that any number of notches costs one test per rotor, and stepping
+ *  can keep the packed state number of the pawl rotors (as defined by
+ *  SubstitutionTable) up to date as it goes, without allocating.
+ *  @author Adrian Kwan
+ */
+class Odometer {
+
+    /** An odometer for a machine whose rotor slots hold ROTORS (ROTORS[0]
+     *  being the reflector) and which has PAWLS pawls. */
+    Odometer(Rotor[] rotors, int pawls) {
+        _numRotors = rotors.length;
+        _first = _numRotors - pawls;
+        _size = rotors[0].size();
+        boolean regular = true;
+        _rotates = new boolean[_numRotors];
+        _notches = new int[_numRotors][];
+        _notchBits = new long[_numRotors][];
+        _weights = new int[_numRotors];
+        int weight = 1;
+        for (int i = _numRotors - 1; i >= 0; i -= 1) {
+            _rotates[i] = i >= _first && rotors[i].rotates();
+            regular &= i < _first || _rotates[i];
+            _weights[i] = i >= _first ? weight : 0;
+            weight *= _size;
+            _notchBits[i] = new long[(_size + Long.SIZE - 1) / Long.SIZE];
+            Alphabet alpha = rotors[i].alphabet();
+            for (int ch : rotors[i].notches().codePoints().toArray()) {
+                if (alpha.contains(ch)) {
+                    int p = alpha.toInt(ch);
+                    _notchBits[i][p >>> WORD_SHIFT] |= 1L << p;
+                }
+            }
+            int n = 0;
+            _notches[i] = new int[_size];
+            for (int p = 0; p < _size; p += 1) {
+                if (atNotch(i, p)) {
+                    _notches[i][n] = p;
+                    n += 1;
+                }
+            }
+            _notches[i] = Arrays.copyOf(_notches[i], n);
+        }
+        _regular = regular;
+    }
+
+    /** Advance POSNS by one key press. */
+    void step(int[] posns) {
+        step(posns, 0);
+    }
+
+    /** Advance POSNS by one key press, given that STATE is the number of
+     *  the state of their pawl rotors, and return the number of the new
+     *  state (both as defined by SubstitutionTable, and so meaningful
+     *  only when the number of states fits in an int). */
+    int step(int[] posns, int state) {
+        int last = _numRotors - 1;
+        for (int i = _first; i <= last; i += 1) {
+            boolean advance = i == last
+                || (i > _first && atNotch(i, posns[i]))
+                || atNotch(i + 1, posns[i + 1]);
+            if (advance && _rotates[i]) {
+                if (posns[i] == _size - 1) {
+                    posns[i] = 0;
+                    state -= (_size - 1) * _weights[i];
+                } else {
+                    posns[i] += 1;
+                    state += _weights[i];
+                }
+            }
+        }
+        return state;
+    }
+
+    /** Return true iff position P is a notch of the rotor in slot K. */
+    private boolean atNotch(int k, int p) {
+        return (_notchBits[k][p >>> WORD_SHIFT] & (1L << p)) != 0;
+    }
+
+    /** Advance POSNS by N key presses.  Rather than stepping N times,
+     *  this skips directly over the stretches of key presses during
+     *  which only the two rightmost rotors move. */
+    void advance(int[] posns, long n) {
+        if (!_regular) {
+            for (; n > 0; n -= 1) {
+                step(posns);
+            }
+            return;
+        }
+        int last = _numRotors - 1;
+        int mid = last - 1;
+        if (last == _first) {
+            posns[last] = (int) ((posns[last] + n) % _size);
+            return;
+        }
+        while (n > 0) {
+            if (middleAtNotch(posns)) {
+                step(posns);
+                n -= 1;
+                continue;
+            }
+            long presses = Long.MAX_VALUE;
+            int pushes = 0;
+            if (mid > _first && _notches[mid].length > 0
+                && _notches[last].length > 0) {
+                pushes = distanceToNotch(mid, posns[mid]);
+                presses = pressOfNotch(last, posns[last], pushes) + 1;
+            }
+            if (presses > n) {
+                pushes = (int) (notchesPassed(last, posns[last], n) % _size);
+                presses = n;
+            }
+            posns[mid] = wrap(posns[mid] + pushes);
+            posns[last] = (int) ((posns[last] + presses) % _size);
+            n -= presses;
+        }
+    }
+
+    /** Return true iff the key press that advances POSNS moves one of
+     *  the rotors checked for double stepping only because it is at its
+     *  own notch, rather than because the rotor to its right is at one:
+     *  that is, the second step of a double step. */
+    boolean doubleSteps(int[] posns) {
+        for (int i = _first + 1; i < _numRotors - 1; i += 1) {
+            if (_rotates[i] && atNotch(i, posns[i])
+                && !atNotch(i + 1, posns[i + 1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return true iff one of the rotors in POSNS that are checked for
+     *  double stepping (all pawl rotors but the first and last) is at a
+     *  notch. */
+    private boolean middleAtNotch(int[] posns) {
+        for (int i = _first + 1; i < _numRotors - 1; i += 1) {
+            if (atNotch(i, posns[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the number of the N key presses starting with rotor K at
+     *  POSN during which K is at one of its notches. */
+    private long notchesPassed(int k, int posn, long n) {
+        int[] notches = _notches[k];
+        long result = (n / _size) * notches.length;
+        int rest = (int) (n % _size);
+        for (int q : notches) {
+            if (wrap(q - posn) < rest) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return the index (from 0) of the key press at which rotor K,
+     *  starting at POSN, is at a notch for the COUNT-th time (COUNT > 0).
+     *  Rotor K must have at least one notch. */
+    private long pressOfNotch(int k, int posn, int count) {
+        int[] notches = _notches[k];
+        int m = notches.length;
+        int start = 0;
+        while (start < m && notches[start] < posn) {
+            start += 1;
+        }
+        int j = start + (count - 1) % m;
+        long offset =
+            j < m ? notches[j] - posn : notches[j - m] + _size - posn;
+        return (long) ((count - 1) / m) * _size + offset;
+    }
+
+    /** Return the number of advances that bring rotor K from POSN, which
+     *  is not a notch, to its next notch.  Rotor K must have at least one
+     *  notch. */
+    private int distanceToNotch(int k, int posn) {
+        for (int q : _notches[k]) {
+            if (q > posn) {
+                return q - posn;
+            }
+        }
+        return _notches[k][0] + _size - posn;
+    }
+
+    /** Return P modulo the alphabet size. */
+    private int wrap(int p) {
+        int r = p % _size;
+        if (r < 0) {
+            r += _size;
+        }
+        return r;
+    }
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Slot of the leftmost pawl rotor. */
+    private final int _first;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** True iff every pawl slot holds a rotating rotor. */
+    private final boolean _regular;
+
+    /** _rotates[i] is true iff the rotor in slot I can advance. */
+    private final boolean[] _rotates;
+
+    /** Bit P of _notchBits[i] (word P / 64) is set iff P is a notch of
+     *  the rotor in slot I. */
+    private final long[][] _notchBits;
+
+    /** Weight of each slot's setting in the number of a state: size to
+     *  the power of the number of pawl slots to its right, or 0 outside
+     *  the pawl slots. */
+    private final int[] _weights;
+
+    /** Log base 2 of the number of bits in a word of _notchBits. */
+    private static final int WORD_SHIFT = 6;
+
+    /** The notches of each rotor, in increasing order. */
+    private final int[][] _notches;
+}
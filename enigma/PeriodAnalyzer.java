@@ -0,0 +1,316 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import ucb.util.CommandArgs;
+
+import static enigma.EnigmaException.*;
+
+/** Analyzes the sequence of rotor settings that a machine steps through.
+ *  Because of double stepping, the settings a machine passes through from
+ *  a given start need not form a single cycle of size**pawls: some
+ *  settings are never revisited (the tail before the cycle), and the
+ *  cycle itself is shorter.  The orbit of one start is found with Brent's
+ *  cycle detection, in time proportional to its tail and period and with
+ *  only a few settings held at once.  The structure of the whole state
+ *  space (every cycle and the number of transient states) is found by
+ *  following every state once.  The rotors outside the pawl slots never
+ *  move, so keep the machine's current settings throughout.
+ *  @author Adrian Kwan
+ */
+class PeriodAnalyzer {
+
+    /** The largest number of pawl states for which structure() will
+     *  run. */
+    static final int MAX_STATES = 1 << 26;
+
+    /** An analyzer of the stepping of MACHINE, which must have its
+     *  rotors in place. */
+    PeriodAnalyzer(Machine machine) {
+        _odometer = machine.odometer();
+        _alphabet = machine.alphabet();
+        _size = _alphabet.size();
+        _numRotors = machine.numRotors();
+        _first = _numRotors - machine.numPawls();
+        _start = new int[_numRotors];
+        for (int i = 0; i < _numRotors; i += 1) {
+            _start[i] = machine.setting(i);
+        }
+    }
+
+    /** The path of settings from one start: TAIL() settings that are
+     *  never reached again, followed by a cycle of PERIOD() settings. */
+    static class Orbit {
+
+        /** An orbit with a tail of TAIL settings and a cycle of PERIOD
+         *  settings, DOUBLESTEPS of whose key presses are double
+         *  steps. */
+        Orbit(long tail, long period, long doubleSteps) {
+            _tail = tail;
+            _period = period;
+            _doubleSteps = doubleSteps;
+        }
+
+        /** Return the number of settings before the cycle. */
+        long tail() {
+            return _tail;
+        }
+
+        /** Return the length of the cycle. */
+        long period() {
+            return _period;
+        }
+
+        /** Return the number of key presses in one trip round the cycle
+         *  that are the second step of a double step. */
+        long doubleSteps() {
+            return _doubleSteps;
+        }
+
+        /** Settings before the cycle. */
+        private final long _tail;
+
+        /** Length of the cycle. */
+        private final long _period;
+
+        /** Double steps per cycle. */
+        private final long _doubleSteps;
+    }
+
+    /** Return the orbit of the machine's settings at the time I was
+     *  created. */
+    Orbit orbit() {
+        return orbit(_start);
+    }
+
+    /** Return the orbit starting at settings START, indexed by slot. */
+    Orbit orbit(int[] start) {
+        int[] tortoise = start.clone();
+        int[] hare = start.clone();
+        _odometer.step(hare);
+        long power = 1, period = 1;
+        while (!same(tortoise, hare)) {
+            if (power == period) {
+                System.arraycopy(hare, 0, tortoise, 0, _numRotors);
+                power *= 2;
+                period = 0;
+            }
+            _odometer.step(hare);
+            period += 1;
+        }
+        System.arraycopy(start, 0, tortoise, 0, _numRotors);
+        System.arraycopy(start, 0, hare, 0, _numRotors);
+        for (long i = 0; i < period; i += 1) {
+            _odometer.step(hare);
+        }
+        long tail = 0;
+        while (!same(tortoise, hare)) {
+            _odometer.step(tortoise);
+            _odometer.step(hare);
+            tail += 1;
+        }
+        long doubleSteps = 0;
+        for (long i = 0; i < period; i += 1) {
+            if (_odometer.doubleSteps(hare)) {
+                doubleSteps += 1;
+            }
+            _odometer.step(hare);
+        }
+        return new Orbit(tail, period, doubleSteps);
+    }
+
+    /** Return the numbers (counting from 1) of the first LIMIT key
+     *  presses from START, indexed by slot, that are the second step of a
+     *  double step, looking no further than the end of the first trip
+     *  round its cycle. */
+    List<Long> doubleSteps(int[] start, int limit) {
+        Orbit orbit = orbit(start);
+        List<Long> result = new ArrayList<>();
+        int[] posns = start.clone();
+        for (long n = 1; n <= orbit.tail() + orbit.period()
+                 && result.size() < limit; n += 1) {
+            if (_odometer.doubleSteps(posns)) {
+                result.add(n);
+            }
+            _odometer.step(posns);
+        }
+        return result;
+    }
+
+    /** Return the settings indexed by slot of the pawl rotors in STATE
+     *  (as defined by SubstitutionTable), with the other rotors at their
+     *  settings when I was created. */
+    int[] settings(long state) {
+        int[] posns = _start.clone();
+        for (int i = _numRotors - 1; i >= _first; i -= 1) {
+            posns[i] = (int) (state % _size);
+            state /= _size;
+        }
+        return posns;
+    }
+
+    /** Return POSNS, indexed by slot, in the form accepted by
+     *  Machine.setRotors. */
+    String setting(int[] posns) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 1; i < _numRotors; i += 1) {
+            result.appendCodePoint(_alphabet.codePoint(posns[i]));
+        }
+        return result.toString();
+    }
+
+    /** The cycles of the whole space of pawl states. */
+    static class Structure {
+
+        /** A structure of CYCLES (mapping each cycle length to the number
+         *  of cycles of that length) and TRANSIENTS states on no cycle. */
+        Structure(Map<Long, Long> cycles, long transients) {
+            _cycles = cycles;
+            _transient = transients;
+        }
+
+        /** Return a map from each cycle length to the number of cycles of
+         *  that length, in increasing order of length. */
+        Map<Long, Long> cycles() {
+            return _cycles;
+        }
+
+        /** Return the number of states on no cycle. */
+        long transientStates() {
+            return _transient;
+        }
+
+        /** Numbers of cycles by length. */
+        private final Map<Long, Long> _cycles;
+
+        /** Number of states on no cycle. */
+        private final long _transient;
+    }
+
+    /** Return the cycle structure of the states of the pawl rotors.
+     *  Every state is followed until it reaches one seen before; if that
+     *  was seen on the same walk, the walk has closed a new cycle. */
+    Structure structure() {
+        int numStates = SubstitutionTable.numStates(_size,
+                                                    _numRotors - _first);
+        if (numStates < 0 || numStates > MAX_STATES) {
+            throw error("too many rotor states to analyze");
+        }
+        int[] walk = new int[numStates];
+        TreeMap<Long, Long> cycles = new TreeMap<>();
+        long onCycles = 0;
+        for (int s = 0; s < numStates; s += 1) {
+            if (walk[s] != 0) {
+                continue;
+            }
+            int id = s + 1;
+            int[] posns = settings(s);
+            int state = s;
+            while (walk[state] == 0) {
+                walk[state] = id;
+                _odometer.step(posns);
+                state = stateIndex(posns);
+            }
+            if (walk[state] == id) {
+                long length = orbit(posns).period();
+                cycles.merge(length, 1L, Long::sum);
+                onCycles += length;
+            }
+        }
+        return new Structure(cycles, numStates - onCycles);
+    }
+
+    /** Return the number of the state of the pawl rotors in POSNS. */
+    private int stateIndex(int[] posns) {
+        int state = 0;
+        for (int i = _first; i < _numRotors; i += 1) {
+            state = state * _size + posns[i];
+        }
+        return state;
+    }
+
+    /** Return true iff settings A and B are the same. */
+    private boolean same(int[] a, int[] b) {
+        for (int i = _first; i < _numRotors; i += 1) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Report on the stepping of a machine, as specified by ARGS:
+     *  [--structure] [--limit=N] CONFIG SETTINGS, where SETTINGS is a
+     *  settings line as in Main's input (quoted as one argument).  Prints
+     *  the tail, period and double steps of the orbit from those
+     *  settings, and the first N (default 10) double steps.  With
+     *  --structure, also prints the cycle structure of all the states of
+     *  the rotors chosen. */
+    public static void main(String... args) {
+        try {
+            CommandArgs options =
+                new CommandArgs("--structure --limit=(\\d+) --=(.*){2}",
+                                args);
+            if (!options.ok()) {
+                throw error("Usage: java enigma.PeriodAnalyzer [--structure] "
+                            + "[--limit=N] CONFIG SETTINGS");
+            }
+            List<String> files = options.get("--");
+            Machine machine = Main.configuration(files.get(0));
+            Main.setUp(machine, files.get(1));
+            int limit = DEFAULT_LIMIT;
+            if (options.contains("--limit")) {
+                limit = Integer.parseInt(options.getLast("--limit"));
+            }
+            PeriodAnalyzer analyzer = new PeriodAnalyzer(machine);
+            Orbit orbit = analyzer.orbit();
+            System.out.printf("From %s: tail %d, period %d, "
+                              + "%d double steps per period%n",
+                              analyzer.setting(analyzer._start),
+                              orbit.tail(), orbit.period(),
+                              orbit.doubleSteps());
+            for (long n : analyzer.doubleSteps(analyzer._start, limit)) {
+                System.out.printf("Double step at key press %d (to %s)%n",
+                                  n, machine.stateAt(n));
+            }
+            if (options.contains("--structure")) {
+                Structure structure = analyzer.structure();
+                for (Map.Entry<Long, Long> e
+                         : structure.cycles().entrySet()) {
+                    System.out.printf("%d cycle(s) of period %d%n",
+                                      e.getValue(), e.getKey());
+                }
+                System.out.printf("%d transient states%n",
+                                  structure.transientStates());
+            }
+            return;
+        } catch (EnigmaException | NumberFormatException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Default number of double steps listed by main. */
+    private static final int DEFAULT_LIMIT = 10;
+
+    /** Stepping rules of the machine's rotors. */
+    private final Odometer _odometer;
+
+    /** Alphabet of the machine. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Slot of the leftmost pawl rotor. */
+    private final int _first;
+
+    /** The machine's settings when I was created, indexed by slot. */
+    private final int[] _start;
+}
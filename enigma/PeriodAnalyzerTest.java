@@ -0,0 +1,81 @@
+package enigma;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the PeriodAnalyzer class.
+ *  @author Adrian Kwan
+ */
+public class PeriodAnalyzerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Number of states of three pawl rotors on one cycle, the middle
+     *  rotor skipping one setting in each turn of the left rotor. */
+    private static final long PERIOD = 26 * 25 * 26;
+
+    /** Return a five-slot machine holding B Beta III IV I at AXLE. */
+    private Machine machine() {
+        return navalMachine(3, "AXLE", "B", "Beta", "III", "IV", "I");
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testOrbit() {
+        PeriodAnalyzer.Orbit orbit = new PeriodAnalyzer(machine()).orbit();
+        assertEquals(0, orbit.tail());
+        assertEquals(PERIOD, orbit.period());
+        assertEquals(26, orbit.doubleSteps());
+    }
+
+    @Test
+    public void testTransientOrbit() {
+        PeriodAnalyzer analyzer = new PeriodAnalyzer(machine());
+        int[] start = analyzer.settings(9 * 26);
+        assertEquals("AAJA", analyzer.setting(start));
+        PeriodAnalyzer.Orbit orbit = analyzer.orbit(start);
+        assertEquals(1, orbit.tail());
+        assertEquals(PERIOD, orbit.period());
+    }
+
+    @Test
+    public void testDoubleSteps() {
+        Machine mach = machine();
+        PeriodAnalyzer analyzer = new PeriodAnalyzer(mach);
+        List<Long> steps = analyzer.doubleSteps(analyzer.settings(0), 30);
+        assertEquals(26, steps.size());
+        mach.setRotors("AAAA");
+        long first = steps.get(0);
+        assertEquals("AAJR", mach.stateAt(first - 1));
+        assertEquals("ABKS", mach.stateAt(first));
+        assertEquals(1, analyzer.doubleSteps(analyzer.settings(0), 1).size());
+    }
+
+    @Test
+    public void testSettings() {
+        PeriodAnalyzer analyzer = new PeriodAnalyzer(machine());
+        assertEquals("AAAA", analyzer.setting(analyzer.settings(0)));
+        assertEquals("AXLE", analyzer.setting(analyzer.settings(
+            (('X' - 'A') * 26 + 'L' - 'A') * 26 + 'E' - 'A')));
+    }
+
+    @Test
+    public void testStructure() {
+        PeriodAnalyzer.Structure structure =
+            new PeriodAnalyzer(machine()).structure();
+        assertEquals(Map.of(PERIOD, 1L), structure.cycles());
+        assertEquals(26 * 26, structure.transientStates());
+    }
+
+}
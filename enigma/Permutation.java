@@ -1,10 +1,16 @@
 package enigma;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
- *  to the characters of an alphabet.
+ *  to the characters of an alphabet.  Permutations are immutable, and may
+ *  be combined by composition, powers and conjugation into new ones,
+ *  each built with a few passes over arrays.  The decomposition into
+ *  cycles is computed when first needed and kept.
  *  @author Adrian Kwan
  */
 class Permutation {
@@ -13,9 +19,10 @@ class Permutation {
      *  form "(cccc) (cc) ..." where the c's are characters in ALPHABET, which
      *  is interpreted as a permutation in cycle notation.  Characters in the
      *  alphabet that are not included in any cycle map to themselves.
-     *  Whitespace is ignored. */
+     *  Whitespace is ignored.  CYCLES is parsed in a single pass over its
+     *  code points, so characters outside the Basic Multilingual Plane
+     *  may appear in it. */
     Permutation(String cycles, Alphabet alphabet) {
-        _cycles = cycles;
         _alphabet = alphabet;
         int[] result = new int[_alphabet.size()];
         int[] inverse = new int[_alphabet.size()];
@@ -23,31 +30,67 @@ class Permutation {
             result[i] = i;
             inverse[i] = i;
         }
-        int cyclestart = cycles.indexOf("(");
-        while (cyclestart >= 0) {
-            cyclestart += 1;
-            char first = cycles.charAt(cyclestart);
-            while (cycles.charAt(cyclestart) != ')') {
-                while (Character.isWhitespace(cycles.charAt(cyclestart))) {
-                    cyclestart += 1;
+        boolean inCycle = false;
+        int first = -1, prev = -1;
+        for (int i = 0; i < cycles.length(); ) {
+            int ch = cycles.codePointAt(i);
+            i += Character.charCount(ch);
+            if (ch == '(') {
+                inCycle = true;
+                first = prev = -1;
+            } else if (ch == ')') {
+                if (prev >= 0) {
+                    result[prev] = first;
+                    inverse[first] = prev;
                 }
-                char current = cycles.charAt(cyclestart);
-                char next = cycles.charAt(cyclestart + 1);
-                if (next == ')') {
-                    result[_alphabet.toInt(current)] = _alphabet.toInt(first);
-                    inverse[_alphabet.toInt(first)] = _alphabet.toInt(current);
+                inCycle = false;
+            } else if (inCycle && !Character.isWhitespace(ch)) {
+                int k = _alphabet.toInt(ch);
+                if (prev >= 0) {
+                    result[prev] = k;
+                    inverse[k] = prev;
                 } else {
-                    result[_alphabet.toInt(current)] = _alphabet.toInt(next);
-                    inverse[_alphabet.toInt(next)] = _alphabet.toInt(current);
+                    first = k;
                 }
-                cyclestart += 1;
+                prev = k;
             }
-            cyclestart = cycles.indexOf("(", cyclestart);
+        }
+        if (inCycle) {
+            throw error("unterminated cycle in %s", cycles);
         }
         _permutation = result;
         _invpermutation = inverse;
     }
 
+    /** Set this Permutation to the one taking each index K of ALPHABET to
+     *  MAPPING[K].  MAPPING must contain every index of ALPHABET exactly
+     *  once. */
+    Permutation(int[] mapping, Alphabet alphabet) {
+        _alphabet = alphabet;
+        if (mapping.length != _alphabet.size()) {
+            throw error("permutation has wrong size");
+        }
+        _permutation = mapping.clone();
+        _invpermutation = new int[mapping.length];
+        Arrays.fill(_invpermutation, -1);
+        for (int k = 0; k < mapping.length; k += 1) {
+            int v = mapping[k];
+            if (v < 0 || v >= mapping.length || _invpermutation[v] != -1) {
+                throw error("mapping is not a permutation");
+            }
+            _invpermutation[v] = k;
+        }
+    }
+
+    /** A permutation of ALPHABET taking K to MAPPING[K], whose inverse
+     *  is INVERSE.  Takes ownership of both arrays, which are not
+     *  checked. */
+    private Permutation(Alphabet alphabet, int[] mapping, int[] inverse) {
+        _alphabet = alphabet;
+        _permutation = mapping;
+        _invpermutation = inverse;
+    }
+
     /** Return the value of P modulo the size of this permutation. */
     final int wrap(int p) {
         int r = p % size();
@@ -103,12 +146,147 @@ class Permutation {
         return true;
     }
 
+    /** Return the permutation that applies me and then NEXT, which
+     *  must be over the same alphabet. */
+    Permutation compose(Permutation next) {
+        int n = _permutation.length;
+        int[] result = new int[n];
+        int[] inverse = new int[n];
+        for (int k = 0; k < n; k += 1) {
+            int v = next._permutation[_permutation[k]];
+            result[k] = v;
+            inverse[v] = k;
+        }
+        return new Permutation(_alphabet, result, inverse);
+    }
+
+    /** Return my inverse. */
+    Permutation inverse() {
+        return new Permutation(_alphabet, _invpermutation, _permutation);
+    }
+
+    /** Return me applied K times in succession (my inverse -K times if K
+     *  is negative), found by repeated squaring.  The magnitude of K is
+     *  taken as unsigned, so that Long.MIN_VALUE is handled too. */
+    Permutation power(long k) {
+        Permutation base = k < 0 ? inverse() : this;
+        int n = _permutation.length;
+        int[] identity = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            identity[i] = i;
+        }
+        Permutation result = new Permutation(_alphabet, identity,
+                                             identity.clone());
+        for (long e = k < 0 ? -k : k; e != 0; e >>>= 1) {
+            if ((e & 1) != 0) {
+                result = result.compose(base);
+            }
+            if ((e >>> 1) != 0) {
+                base = base.compose(base);
+            }
+        }
+        return result;
+    }
+
+    /** Return my conjugate by a rotation by K: the permutation taking P
+     *  to permute(P + K) - K.  This is how a rotor with permutation me
+     *  acts when its setting is K ahead of its ring setting. */
+    Permutation conjugate(int k) {
+        int n = _permutation.length;
+        int d = wrap(k);
+        int[] result = new int[n];
+        int[] inverse = new int[n];
+        for (int p = 0; p < n; p += 1) {
+            int q = p + d < n ? p + d : p + d - n;
+            int v = _permutation[q] - d;
+            if (v < 0) {
+                v += n;
+            }
+            result[p] = v;
+            inverse[v] = p;
+        }
+        return new Permutation(_alphabet, result, inverse);
+    }
+
+    /** Return my conjugate by OUTER: the permutation that applies OUTER,
+     *  then me, then the inverse of OUTER.  This is how a signal passing
+     *  into a rotor with permutation OUTER, through me and back out of
+     *  the rotor is transformed. */
+    Permutation conjugate(Permutation outer) {
+        int n = _permutation.length;
+        int[] result = new int[n];
+        int[] inverse = new int[n];
+        for (int p = 0; p < n; p += 1) {
+            int v = outer._invpermutation[_permutation[outer._permutation[p]]];
+            result[p] = v;
+            inverse[v] = p;
+        }
+        return new Permutation(_alphabet, result, inverse);
+    }
+
+    /** Return my cycles, each as the indices it visits in order starting
+     *  with its smallest, and in order of their smallest indices.  Fixed
+     *  points are cycles of length 1.  The result is shared, and must
+     *  not be modified. */
+    synchronized int[][] cycles() {
+        if (_cycles == null) {
+            int n = _permutation.length;
+            boolean[] seen = new boolean[n];
+            List<int[]> cycles = new ArrayList<>();
+            int[] cycle = new int[n];
+            for (int start = 0; start < n; start += 1) {
+                int len = 0;
+                for (int k = start; !seen[k]; k = _permutation[k]) {
+                    seen[k] = true;
+                    cycle[len] = k;
+                    len += 1;
+                }
+                if (len > 0) {
+                    cycles.add(Arrays.copyOf(cycle, len));
+                }
+            }
+            _cycles = cycles.toArray(new int[0][]);
+        }
+        return _cycles;
+    }
+
+    /** Return the order of the cycle containing index P. */
+    int cycleLength(int p) {
+        int r = wrap(p);
+        int len = 1;
+        for (int k = _permutation[r]; k != r; k = _permutation[k]) {
+            len += 1;
+        }
+        return len;
+    }
+
+    /** Return my cycles of two or more characters, in the notation
+     *  accepted by Permutation(String, Alphabet). */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int[] cycle : cycles()) {
+            if (cycle.length < 2) {
+                continue;
+            }
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append('(');
+            for (int k : cycle) {
+                result.appendCodePoint(_alphabet.codePoint(k));
+            }
+            result.append(')');
+        }
+        return result.toString();
+    }
+
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
     /** The Permutation Array. */
     private int[] _permutation;
     /** The Inverse Array. */
     private int[] _invpermutation;
-    /** The Cycles. */
-    private String _cycles;
+    /** My cycles, or null if not yet computed. */
+    private int[][] _cycles;
 }
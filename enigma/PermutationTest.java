@@ -136,6 +136,60 @@ public class PermutationTest {
         checkPerm("testGamma", UPPER_STRING, s);
     }
 
+    @Test
+    public void permutationSparseAlphabet() {
+        String chars = "A\u4e00Z\uffee\u0101\u9fa5";
+        Alphabet sparse = new Alphabet(chars);
+        perm = new Permutation("(A\u4e00\uffee) (Z\u9fa5)", sparse);
+        assertEquals(6, perm.size());
+        assertEquals('\u4e00', perm.permute('A'));
+        assertEquals('A', perm.permute('\uffee'));
+        assertEquals('\u0101', perm.permute('\u0101'));
+        assertEquals('Z', perm.invert('\u9fa5'));
+        assertEquals(3, sparse.toInt('\uffee'));
+        assertFalse(sparse.contains('B'));
+        assertFalse(sparse.contains('\u4e01'));
+    }
 
+    @Test
+    public void permutationAlgebra() {
+        perm = new Permutation(NAVALA.get("I"), UPPER);
+        Permutation ident = new Permutation("", UPPER);
+        Permutation twice = perm.compose(perm);
+        for (int k = 0; k < 26; k += 1) {
+            assertEquals(perm.permute(perm.permute(k)), twice.permute(k));
+            assertEquals(k, perm.compose(perm.inverse()).permute(k));
+            assertEquals(perm.invert(k), perm.power(-1).permute(k));
+            assertEquals(twice.permute(twice.permute(twice.permute(k))),
+                         perm.power(6).permute(k));
+            assertEquals(k, perm.power(60).permute(k));
+            assertEquals(k, ident.power(1L << 40).permute(k));
+            assertEquals(perm.wrap(perm.permute(k + 5) - 5),
+                         perm.conjugate(5).permute(k));
+            assertEquals(perm.invert(twice.permute(perm.permute(k))),
+                         twice.conjugate(perm).permute(k));
+        }
+        assertNotEquals(0, perm.power(59).permute(0));
+        Permutation least = perm.power(Long.MIN_VALUE);
+        Permutation most = perm.power(Long.MAX_VALUE);
+        for (int k = 0; k < 26; k += 1) {
+            assertEquals(perm.power(Long.MIN_VALUE % 60).permute(k),
+                         least.permute(k));
+            assertEquals(perm.power(Long.MAX_VALUE % 60).permute(k),
+                         most.permute(k));
+            assertEquals(k, least.compose(most).compose(perm).permute(k));
+        }
+        assertEquals(7, perm.cycles().length);
+        assertEquals(10, perm.cycleLength(UPPER.toInt('Q')));
+        assertEquals(1, perm.cycleLength(UPPER.toInt('S')));
+        assertEquals("(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ)",
+                     perm.toString());
+        assertEquals("", ident.toString());
+        Permutation cubed = perm.power(3);
+        Permutation parsed = new Permutation(cubed.toString(), UPPER);
+        for (int k = 0; k < 26; k += 1) {
+            assertEquals(cubed.permute(k), parsed.permute(k));
+        }
+    }
 
 }
@@ -0,0 +1,128 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/** A Reader that reads ahead from another Reader on a thread of its own,
+ *  so that waiting for input overlaps with the work of its client.  The
+ *  source is read in chunks into a fixed set of buffers, which pass to
+ *  the client through a bounded queue in the order read, and return to
+ *  the reading thread once the client has consumed them.  An exception
+ *  thrown by the source is rethrown to the client in its place in the
+ *  input.  A PipelinedReader is read by one thread at a time.
+ *  @author Adrian Kwan
+ */
+class PipelinedReader extends Reader {
+
+    /** A reader of the contents of SOURCE, read ahead by up to DEPTH
+     *  chunks of SIZE characters. */
+    PipelinedReader(Reader source, int size, int depth) {
+        _source = source;
+        _full = new ArrayBlockingQueue<>(depth);
+        _empty = new ArrayBlockingQueue<>(depth + 1);
+        for (int i = 0; i <= depth; i += 1) {
+            _empty.add(new Chunk(size));
+        }
+        _reader = new Thread(this::fill, "enigma-reader");
+        _reader.setDaemon(true);
+        _reader.start();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (_current == null) {
+            try {
+                _current = _full.take();
+            } catch (InterruptedException excp) {
+                throw new InterruptedIOException();
+            }
+            _pos = 0;
+        }
+        if (_current._error != null) {
+            throw _current._error;
+        }
+        if (_current._len < 0) {
+            return -1;
+        }
+        int n = Math.min(len, _current._len - _pos);
+        System.arraycopy(_current._data, _pos, cbuf, off, n);
+        _pos += n;
+        if (_pos == _current._len) {
+            _empty.add(_current);
+            _current = null;
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _reader.interrupt();
+        _source.close();
+    }
+
+    /** Read the source into empty chunks, queueing each for the client,
+     *  until the source is exhausted or fails. */
+    private void fill() {
+        try {
+            while (true) {
+                Chunk chunk = _empty.take();
+                try {
+                    chunk._len = _source.read(chunk._data);
+                } catch (IOException excp) {
+                    chunk._error = excp;
+                    chunk._len = -1;
+                }
+                _full.put(chunk);
+                if (chunk._len < 0) {
+                    return;
+                }
+            }
+        } catch (InterruptedException excp) {
+            /* Closed, leaving nothing more to do. */
+            return;
+        }
+    }
+
+    /** A buffer of input. */
+    private static class Chunk {
+
+        /** A chunk with room for SIZE characters. */
+        Chunk(int size) {
+            _data = new char[size];
+        }
+
+        /** The characters read. */
+        private final char[] _data;
+
+        /** Number of characters in _data, or -1 at the end of the
+         *  input. */
+        private int _len;
+
+        /** The exception thrown in reading this chunk, or null. */
+        private IOException _error;
+    }
+
+    /** Source of my input. */
+    private final Reader _source;
+
+    /** Chunks read from _source, in order, for the client. */
+    private final BlockingQueue<Chunk> _full;
+
+    /** Chunks ready to be filled. */
+    private final BlockingQueue<Chunk> _empty;
+
+    /** Thread reading _source. */
+    private final Thread _reader;
+
+    /** The chunk being consumed, or null. */
+    private Chunk _current;
+
+    /** Number of characters of _current consumed. */
+    private int _pos;
+}
@@ -0,0 +1,113 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the PipelinedReader class.
+ *  @author Adrian Kwan
+ */
+public class PipelinedReaderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Input to Main holding two messages. */
+    private static final String INPUT =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "FROM HIS SHOULDER HIAWATHA\n\n"
+        + "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "QVPQS OKOIL PUBKJ ZPISF XDW\n";
+
+    /** A Reader of TEXT that then fails. */
+    private static class FailingReader extends Reader {
+
+        /** A reader of TEXT, failing once TEXT is read. */
+        FailingReader(String text) {
+            _text = new StringReader(text);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int n = _text.read(cbuf, off, len);
+            if (n == -1) {
+                throw new IOException("read failed");
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /** The text read before failing. */
+        private final StringReader _text;
+    }
+
+    /** Return the contents of IN, read LEN characters at a time. */
+    private String readAll(Reader in, int len) throws IOException {
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[len];
+        for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+            result.append(buffer, 0, n);
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRead() throws IOException {
+        for (int len = 1; len < 20; len += 3) {
+            Reader in = new PipelinedReader(new StringReader(INPUT), 7, 2);
+            assertEquals(INPUT, readAll(in, len));
+            assertEquals(-1, in.read(new char[1]));
+            in.close();
+        }
+    }
+
+    @Test
+    public void testMessages() throws IOException {
+        StringWriter expected = new StringWriter();
+        MessageProcessor direct = new MessageProcessor(
+            navalMachine(3, "AXLE", "B", "Beta", "III", "IV", "I"), expected);
+        direct.process(INPUT.toCharArray(), 0, INPUT.length());
+        direct.finish();
+        StringWriter result = new StringWriter();
+        MessageProcessor piped = new MessageProcessor(
+            navalMachine(3, "AXLE", "B", "Beta", "III", "IV", "I"), result);
+        Reader in = new PipelinedReader(new StringReader(INPUT), 7, 2);
+        char[] buffer = new char[11];
+        for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+            piped.process(buffer, 0, n);
+        }
+        piped.finish();
+        assertEquals(expected.toString(), result.toString());
+    }
+
+    @Test
+    public void testSourceError() throws IOException {
+        Reader in = new PipelinedReader(new FailingReader(INPUT), 7, 2);
+        char[] buffer = new char[INPUT.length() + 1];
+        int total = 0;
+        try {
+            while (true) {
+                total += in.read(buffer, total, buffer.length - total);
+            }
+        } catch (IOException excp) {
+            assertEquals("read failed", excp.getMessage());
+        }
+        assertEquals(INPUT, new String(buffer, 0, total));
+    }
+
+}
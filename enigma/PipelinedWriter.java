@@ -0,0 +1,195 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/** A Writer that passes what is written to it to another Writer on a
+ *  thread of its own, so that waiting for output overlaps with the work
+ *  of its client.  Output is collected in chunks from a fixed set of
+ *  buffers, which pass to the writing thread through a bounded queue in
+ *  the order written.  flush() and close() wait until everything written
+ *  before them has reached the destination.  An exception thrown by the
+ *  destination is rethrown to the client by its next call.  A
+ *  PipelinedWriter is written by one thread at a time.
+ *  @author Adrian Kwan
+ */
+class PipelinedWriter extends Writer {
+
+    /** A writer to DESTINATION, holding up to DEPTH chunks of SIZE
+     *  characters not yet written. */
+    PipelinedWriter(Writer destination, int size, int depth) {
+        _destination = destination;
+        _full = new ArrayBlockingQueue<>(depth + 1);
+        _empty = new ArrayBlockingQueue<>(depth + 1);
+        for (int i = 0; i <= depth; i += 1) {
+            _empty.add(new Chunk(size));
+        }
+        _done = new Semaphore(0);
+        Thread writer = new Thread(this::drain, "enigma-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        checkError();
+        while (len > 0) {
+            if (_current == null) {
+                _current = take();
+            }
+            int n = Math.min(len, _current._data.length - _current._len);
+            System.arraycopy(cbuf, off, _current._data, _current._len, n);
+            _current._len += n;
+            off += n;
+            len -= n;
+            if (_current._len == _current._data.length) {
+                send(false, false);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        send(true, false);
+        await();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        send(true, true);
+        await();
+    }
+
+    /** Queue the current chunk, if any, for the writing thread, marking
+     *  it to be followed by flushing the destination if FLUSH, and by
+     *  closing it if CLOSE. */
+    private void send(boolean flush, boolean close) throws IOException {
+        if (_current == null) {
+            if (!flush) {
+                return;
+            }
+            _current = take();
+        }
+        _current._flush = flush;
+        _current._close = close;
+        try {
+            _full.put(_current);
+        } catch (InterruptedException excp) {
+            throw new InterruptedIOException();
+        }
+        _current = null;
+    }
+
+    /** Wait until the writing thread has dealt with the last chunk
+     *  marked to flush the destination. */
+    private void await() throws IOException {
+        try {
+            _done.acquire();
+        } catch (InterruptedException excp) {
+            throw new InterruptedIOException();
+        }
+        checkError();
+    }
+
+    /** Return an empty chunk, waiting for one if necessary. */
+    private Chunk take() throws IOException {
+        try {
+            return _empty.take();
+        } catch (InterruptedException excp) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    /** Rethrow any exception thrown by the destination. */
+    private void checkError() throws IOException {
+        if (_error != null) {
+            throw _error;
+        }
+    }
+
+    /** Write queued chunks to the destination until one marked to close
+     *  it. */
+    private void drain() {
+        try {
+            while (true) {
+                Chunk chunk = _full.take();
+                try {
+                    if (_error == null) {
+                        _destination.write(chunk._data, 0, chunk._len);
+                        if (chunk._flush) {
+                            _destination.flush();
+                        }
+                        if (chunk._close) {
+                            _destination.close();
+                        }
+                    }
+                } catch (IOException excp) {
+                    _error = excp;
+                }
+                if (chunk._flush) {
+                    _done.release();
+                }
+                if (chunk._close) {
+                    return;
+                }
+                chunk._len = 0;
+                _empty.put(chunk);
+            }
+        } catch (InterruptedException excp) {
+            /* Abandoned, leaving nothing more to do. */
+            return;
+        }
+    }
+
+    /** A buffer of output. */
+    private static class Chunk {
+
+        /** A chunk with room for SIZE characters. */
+        Chunk(int size) {
+            _data = new char[size];
+        }
+
+        /** The characters written. */
+        private final char[] _data;
+
+        /** Number of characters in _data. */
+        private int _len;
+
+        /** True iff the destination is to be flushed after writing
+         *  _data. */
+        private boolean _flush;
+
+        /** True iff the destination is to be closed after writing
+         *  _data. */
+        private boolean _close;
+    }
+
+    /** Destination of my output. */
+    private final Writer _destination;
+
+    /** Chunks, in order, for the writing thread. */
+    private final BlockingQueue<Chunk> _full;
+
+    /** Chunks ready to be filled. */
+    private final BlockingQueue<Chunk> _empty;
+
+    /** Released each time a chunk marked to flush has been written. */
+    private final Semaphore _done;
+
+    /** The chunk being filled, or null. */
+    private Chunk _current;
+
+    /** True once I have been closed. */
+    private boolean _closed;
+
+    /** The exception thrown by _destination, or null. */
+    private volatile IOException _error;
+}
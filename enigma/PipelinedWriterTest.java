@@ -0,0 +1,117 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the PipelinedWriter class.
+ *  @author Adrian Kwan
+ */
+public class PipelinedWriterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Input to Main holding two messages. */
+    private static final String INPUT =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "FROM HIS SHOULDER HIAWATHA\n\n"
+        + "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "QVPQS OKOIL PUBKJ ZPISF XDW\n";
+
+    /** A Writer that fails on every write. */
+    private static class FailingWriter extends Writer {
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            throw new IOException("write failed");
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testWrite() throws IOException {
+        StringWriter result = new StringWriter();
+        Writer out = new PipelinedWriter(result, 5, 2);
+        for (int k = 0; k < INPUT.length(); k += 3) {
+            out.write(INPUT, k, Math.min(3, INPUT.length() - k));
+        }
+        out.close();
+        assertEquals(INPUT, result.toString());
+        out.close();
+    }
+
+    @Test
+    public void testFlush() throws IOException {
+        StringWriter result = new StringWriter();
+        Writer out = new PipelinedWriter(result, 64, 2);
+        out.write("FROM HIS");
+        out.flush();
+        assertEquals("FROM HIS", result.toString());
+        out.write(" SHOULDER");
+        out.flush();
+        assertEquals("FROM HIS SHOULDER", result.toString());
+        out.close();
+    }
+
+    @Test
+    public void testMessages() throws IOException {
+        StringWriter expected = new StringWriter();
+        MessageProcessor direct = new MessageProcessor(
+            navalMachine(3, "AXLE", "B", "Beta", "III", "IV", "I"), expected);
+        direct.process(INPUT.toCharArray(), 0, INPUT.length());
+        direct.finish();
+        StringWriter result = new StringWriter();
+        Writer out = new PipelinedWriter(result, 5, 2);
+        MessageProcessor piped = new MessageProcessor(
+            navalMachine(3, "AXLE", "B", "Beta", "III", "IV", "I"), out);
+        piped.process(INPUT.toCharArray(), 0, INPUT.length());
+        piped.finish();
+        out.close();
+        assertEquals(expected.toString(), result.toString());
+    }
+
+    @Test
+    public void testDestinationError() throws IOException {
+        FailingWriter destination = new FailingWriter();
+        Writer out = new PipelinedWriter(destination, 5, 2);
+        out.write("FROM HIS");
+        try {
+            out.flush();
+            fail("failed write not reported");
+        } catch (IOException excp) {
+            assertEquals("write failed", excp.getMessage());
+        }
+        try {
+            out.write("SHOULDER");
+            fail("failed write not reported");
+        } catch (IOException excp) {
+            assertEquals("write failed", excp.getMessage());
+        }
+        try {
+            out.close();
+            fail("failed write not reported");
+        } catch (IOException excp) {
+            assertEquals("write failed", excp.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package enigma;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/** A task that performs an action on each of a range of numbers,
+ *  splitting the range among the threads of its pool.
+ *  @author Adrian Kwan
+ */
+class RangeTask extends RecursiveAction {
+
+    /** A task performing ACTION on each of LO..HI-1. */
+    RangeTask(int lo, int hi, IntConsumer action) {
+        _lo = lo;
+        _hi = hi;
+        _action = action;
+    }
+
+    @Override
+    protected void compute() {
+        if (_hi - _lo == 1) {
+            _action.accept(_lo);
+        } else if (_hi - _lo > 1) {
+            int mid = (_lo + _hi) >>> 1;
+            invokeAll(new RangeTask(_lo, mid, _action),
+                      new RangeTask(mid, _hi, _action));
+        }
+    }
+
+    /** Range of numbers handled. */
+    private final int _lo, _hi;
+
+    /** Action applied to each number. */
+    private final IntConsumer _action;
+}
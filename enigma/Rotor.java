@@ -2,7 +2,11 @@ package enigma;
 
 import static enigma.EnigmaException.*;
 
-/** Superclass that represents a rotor in the enigma machine.
+/** Superclass that represents a rotor in the enigma machine.  The
+ *  wiring and notches of a rotor never change, so one rotor may be
+ *  shared by any number of machines, which keep their own settings and
+ *  ring settings for it.  The setting and ring setting held by the rotor
+ *  itself apply only when it is used on its own.
  *  @author Adrian Kwan
  */
 class Rotor {
@@ -75,33 +79,84 @@ class Rotor {
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int actual = _setting + p % size() - _rsetting;
-        int result = _permutation.permute(actual);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(result));
-        }
-        result = result - _setting;
-        if (result >= 0) {
-            return (result + _rsetting) % size();
-        } else {
-            return result + size() + _rsetting;
-        }
+        return convertForward(p, _setting, _rsetting);
+    }
+
+    /** Return the conversion of P (an integer in the range 0..size()-1)
+     *  according to my permutation when I am at setting POSN with ring
+     *  setting RING.  Unlike convertForward(P), this does not use my own
+     *  settings. */
+    int convertForward(int p, int posn, int ring) {
+        return exit(contactForward(p, posn, ring), posn, ring);
+    }
+
+    /** Return the contact (an integer in the range 0..size()-1) through
+     *  which the signal entering at P leaves me going forward when I am
+     *  at setting POSN with ring setting RING. */
+    int contactForward(int p, int posn, int ring) {
+        return _permutation.permute(posn + p - ring);
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        int actual = _setting + e % size() - _rsetting;
-        int result = _permutation.invert(actual);
-        if (Main.verbose()) {
-            System.err.printf("%c -> ", alphabet().toChar(result));
+        return convertBackward(e, _setting, _rsetting);
+    }
+
+    /** Return the conversion of E (an integer in the range 0..size()-1)
+     *  according to the inverse of my permutation when I am at setting
+     *  POSN with ring setting RING. */
+    int convertBackward(int e, int posn, int ring) {
+        return exit(contactBackward(e, posn, ring), posn, ring);
+    }
+
+    /** Return the contact through which the signal entering at E leaves
+     *  me going backward when I am at setting POSN with ring setting
+     *  RING. */
+    int contactBackward(int e, int posn, int ring) {
+        return _permutation.invert(posn + e - ring);
+    }
+
+    /** Return the position, relative to the machine, of my CONTACT when
+     *  I am at setting POSN with ring setting RING. */
+    int exit(int contact, int posn, int ring) {
+        return _permutation.wrap(contact - posn + ring);
+    }
+
+    /** Return a table of my substitutions going forward at every offset
+     *  of my setting from my ring setting: convertForward(P, POSN, RING)
+     *  is at index ((POSN - RING) mod size()) * size() + P.  The table is
+     *  built on first use and shared thereafter, so must not be
+     *  modified. */
+    synchronized int[] forwardTable() {
+        if (_forwardTable == null) {
+            _forwardTable = offsetTable(true);
         }
-        result = result - _setting;
-        if (result >= 0) {
-            return (result + _rsetting) % size();
-        } else {
-            return result + size() + _rsetting;
+        return _forwardTable;
+    }
+
+    /** Return a table of my substitutions going backward, arranged as
+     *  for forwardTable(). */
+    synchronized int[] backwardTable() {
+        if (_backwardTable == null) {
+            _backwardTable = offsetTable(false);
+        }
+        return _backwardTable;
+    }
+
+    /** Return a newly built table of my substitutions going FORWARD or
+     *  backward, as for forwardTable(). */
+    private int[] offsetTable(boolean forward) {
+        int size = size();
+        int[] result = new int[size * size];
+        for (int d = 0; d < size; d += 1) {
+            for (int p = 0; p < size; p += 1) {
+                result[d * size + p] =
+                    forward ? convertForward(p, d, 0)
+                    : convertBackward(p, d, 0);
+            }
         }
+        return result;
     }
 
     /** Returns the positions of the notches, as a string giving the letters
@@ -137,5 +192,12 @@ class Rotor {
     /** ring setting of rotor. */
     private int _rsetting;
 
+    /** Table of forward substitutions by offset, or null if not built. */
+    private int[] _forwardTable;
+
+    /** Table of backward substitutions by offset, or null if not
+     *  built. */
+    private int[] _backwardTable;
+
 
 }
@@ -0,0 +1,302 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Flow;
+
+/** A stage of a reactive pipeline that applies an Enigma machine to
+ *  chunks of text in the format of the input to Main (see
+ *  MessageProcessor): settings lines starting with '*' reconfigure the
+ *  machine as for Main.setUp, and other lines are converted and
+ *  published in groups of five.  Chunks may split lines anywhere.  The
+ *  output of each chunk is published as soon as it is converted.
+ *
+ *  Input is requested one chunk at a time, and only while fewer than a
+ *  fixed number of converted chunks are waiting for the subscriber to
+ *  request them.  When the subscriber stalls, its backlog fills and no
+ *  more input is requested, so that a slow consumer holds back its
+ *  producer instead of letting chunks pile up without bound; nothing
+ *  blocks.  A settings line that Main.setUp rejects (or any other failure)
+ *  cancels the input and ends the output with that error.  A processor
+ *  has one subscriber and converts one stream.
+ *  @author Adrian Kwan
+ */
+class StreamProcessor implements Flow.Processor<CharBuffer, CharBuffer> {
+
+    /** A processor converting with MACHINE that holds up to BACKLOG
+     *  converted chunks not yet requested by its subscriber. */
+    StreamProcessor(Machine machine, int backlog) {
+        if (backlog <= 0) {
+            throw new IllegalArgumentException("backlog must be positive");
+        }
+        _messages = new MessageProcessor(machine, new ChunkWriter());
+        _backlog = backlog;
+    }
+
+    /** A processor converting with MACHINE, with the default backlog. */
+    StreamProcessor(Machine machine) {
+        this(machine, Flow.defaultBufferSize());
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CharBuffer> subscriber) {
+        boolean first;
+        synchronized (this) {
+            first = !_subscribed;
+            _subscribed = true;
+        }
+        subscriber.onSubscribe(new Downstream());
+        if (!first) {
+            subscriber.onError(
+                new IllegalStateException("already subscribed"));
+            return;
+        }
+        synchronized (this) {
+            _subscriber = subscriber;
+        }
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (_upstream == null && !_finished) {
+                _upstream = subscription;
+                subscription = null;
+            }
+        }
+        if (subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(CharBuffer chunk) {
+        try {
+            if (chunk.hasArray()) {
+                _messages.process(chunk.array(),
+                                  chunk.arrayOffset() + chunk.position(),
+                                  chunk.remaining());
+            } else {
+                char[] text = new char[chunk.remaining()];
+                chunk.duplicate().get(text);
+                _messages.process(text, 0, text.length);
+            }
+            _messages.flush();
+        } catch (IOException | RuntimeException excp) {
+            fail(excp);
+            return;
+        }
+        synchronized (this) {
+            _requested = false;
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable excp) {
+        synchronized (this) {
+            if (_finished) {
+                return;
+            }
+            _finished = true;
+            _error = excp;
+            _pending.clear();
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            _messages.finish();
+        } catch (IOException | RuntimeException excp) {
+            fail(excp);
+            return;
+        }
+        synchronized (this) {
+            _finished = true;
+        }
+        drain();
+    }
+
+    /** Stop on EXCP: cancel my input and end my output with EXCP. */
+    private void fail(Exception excp) {
+        Flow.Subscription upstream;
+        synchronized (this) {
+            upstream = _upstream;
+        }
+        if (upstream != null) {
+            upstream.cancel();
+        }
+        onError(excp);
+    }
+
+    /** Carry out whatever is now due: deliver pending chunks for which
+     *  there is demand, end the output once the input has ended and all
+     *  its output is delivered, and request more input if there is room
+     *  for its output.  Only one thread drains at a time; a call made
+     *  while another thread (or an outer call on this one) is draining
+     *  leaves the work to it. */
+    private void drain() {
+        synchronized (this) {
+            if (_draining) {
+                _missed = true;
+                return;
+            }
+            _draining = true;
+        }
+        while (true) {
+            CharBuffer chunk = null;
+            boolean end = false, request = false;
+            Flow.Subscriber<? super CharBuffer> subscriber;
+            Flow.Subscription upstream;
+            Throwable error;
+            synchronized (this) {
+                subscriber = _subscriber;
+                upstream = _upstream;
+                error = _error;
+                if (subscriber != null && !_cancelled && !_ended) {
+                    if (_demand > 0 && !_pending.isEmpty()) {
+                        chunk = _pending.remove();
+                        _demand -= 1;
+                    } else if (_finished && _pending.isEmpty()) {
+                        end = _ended = true;
+                    } else if (!_finished && !_requested && upstream != null
+                               && _pending.size() < _backlog) {
+                        request = _requested = true;
+                    }
+                }
+                if (chunk == null && !end && !request) {
+                    if (!_missed) {
+                        _draining = false;
+                        return;
+                    }
+                    _missed = false;
+                    continue;
+                }
+            }
+            if (chunk != null) {
+                subscriber.onNext(chunk);
+            } else if (end && error != null) {
+                subscriber.onError(error);
+            } else if (end) {
+                subscriber.onComplete();
+            } else {
+                upstream.request(1);
+            }
+        }
+    }
+
+    /** The subscription of my subscriber. */
+    private class Downstream implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                onError(new IllegalArgumentException(
+                    "non-positive request: " + n));
+                cancelInput();
+                return;
+            }
+            synchronized (StreamProcessor.this) {
+                _demand = _demand + n < 0 ? Long.MAX_VALUE : _demand + n;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (StreamProcessor.this) {
+                _cancelled = true;
+                _pending.clear();
+            }
+            cancelInput();
+        }
+
+        /** Cancel my input, if subscribed. */
+        private void cancelInput() {
+            Flow.Subscription upstream;
+            synchronized (StreamProcessor.this) {
+                upstream = _upstream;
+            }
+            if (upstream != null) {
+                upstream.cancel();
+            }
+        }
+    }
+
+    /** Collects each piece of MessageProcessor output as a chunk. */
+    private class ChunkWriter extends Writer {
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            if (len > 0) {
+                CharBuffer chunk =
+                    CharBuffer.wrap(Arrays.copyOfRange(cbuf, off, off + len));
+                synchronized (StreamProcessor.this) {
+                    if (!_cancelled && !_finished) {
+                        _pending.add(chunk);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /** Parser and converter of the text received. */
+    private final MessageProcessor _messages;
+
+    /** Most converted chunks held before input stops being requested. */
+    private final int _backlog;
+
+    /** Converted chunks not yet delivered. */
+    private final Queue<CharBuffer> _pending = new ArrayDeque<>();
+
+    /** True once subscribe() has been called. */
+    private boolean _subscribed;
+
+    /** My subscriber, once it has been given its subscription, or
+     *  null. */
+    private Flow.Subscriber<? super CharBuffer> _subscriber;
+
+    /** Subscription to my input, or null. */
+    private Flow.Subscription _upstream;
+
+    /** Number of chunks requested by my subscriber and not delivered. */
+    private long _demand;
+
+    /** True iff a chunk of input has been requested and not received. */
+    private boolean _requested;
+
+    /** True once the input has ended, normally or not. */
+    private boolean _finished;
+
+    /** The error ending the input, or null. */
+    private Throwable _error;
+
+    /** True once my subscriber has been told the output has ended. */
+    private boolean _ended;
+
+    /** True once my subscriber has cancelled. */
+    private boolean _cancelled;
+
+    /** True while some thread is in drain(). */
+    private boolean _draining;
+
+    /** True iff drain() was called while another call was draining. */
+    private boolean _missed;
+}
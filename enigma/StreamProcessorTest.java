@@ -0,0 +1,171 @@
+package enigma;
+
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the StreamProcessor class.
+ *  @author Adrian Kwan
+ */
+public class StreamProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Input to Main holding two messages. */
+    private static final String INPUT =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "FROM HIS SHOULDER HIAWATHA\n\n"
+        + "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n"
+        + "QVPQS OKOIL PUBKJ ZPISF XDW\n";
+
+    /** Seconds to wait for the end of a stream. */
+    private static final long WAIT = 2;
+
+    /** A subscriber collecting the text of the chunks it receives,
+     *  requesting them one at a time. */
+    private static class Collector implements Flow.Subscriber<CharBuffer> {
+
+        /** A collector that requests its first chunk on subscribing iff
+         *  START, and otherwise waits for its client to request it. */
+        Collector(boolean start) {
+            _start = start;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            _subscription = subscription;
+            if (_start) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(CharBuffer chunk) {
+            _text.append(chunk);
+            _subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable excp) {
+            _done.completeExceptionally(excp);
+        }
+
+        @Override
+        public void onComplete() {
+            _done.complete(_text.toString());
+        }
+
+        /** Request the first chunk. */
+        void start() {
+            _subscription.request(1);
+        }
+
+        /** Return the text received, waiting up to WAIT seconds for the
+         *  stream to end.  Throws ExecutionException if it ended with an
+         *  error. */
+        String text() throws Exception {
+            return _done.get(WAIT, TimeUnit.SECONDS);
+        }
+
+        /** True iff I request my first chunk on subscribing. */
+        private final boolean _start;
+
+        /** My subscription. */
+        private Flow.Subscription _subscription;
+
+        /** The text received so far. */
+        private final StringBuilder _text = new StringBuilder();
+
+        /** Completed with the text received at the end of the stream. */
+        private final CompletableFuture<String> _done =
+            new CompletableFuture<>();
+    }
+
+    /** Return a five-slot machine holding B Beta III IV I at AXLE. */
+    private Machine machine() {
+        return navalMachine(3, "AXLE", "B", "Beta", "III", "IV", "I");
+    }
+
+    /** Connect SOURCE to SINK through a processor converting with
+     *  machine(), holding up to BACKLOG converted chunks. */
+    private void connect(SubmissionPublisher<CharBuffer> source,
+                         int backlog, Collector sink) {
+        StreamProcessor stage = new StreamProcessor(machine(), backlog);
+        source.subscribe(stage);
+        stage.subscribe(sink);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testConvert() throws Exception {
+        StringWriter expected = new StringWriter();
+        MessageProcessor direct = new MessageProcessor(machine(), expected);
+        direct.process(INPUT.toCharArray(), 0, INPUT.length());
+        direct.finish();
+        SubmissionPublisher<CharBuffer> source = new SubmissionPublisher<>();
+        Collector sink = new Collector(true);
+        connect(source, Flow.defaultBufferSize(), sink);
+        for (int k = 0; k < INPUT.length(); k += 7) {
+            source.submit(CharBuffer.wrap(INPUT, k,
+                                          Math.min(k + 7, INPUT.length())));
+        }
+        source.close();
+        assertEquals(expected.toString(), sink.text());
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        SubmissionPublisher<CharBuffer> source =
+            new SubmissionPublisher<>(ForkJoinPool.commonPool(), 2);
+        Collector stalled = new Collector(false);
+        connect(source, 2, stalled);
+        source.submit(CharBuffer.wrap(INPUT.substring(0, 48)));
+        int accepted = 0;
+        CharBuffer line = CharBuffer.wrap("ABCDE\n");
+        while (source.offer(line.duplicate(), 100, TimeUnit.MILLISECONDS,
+                            null) >= 0) {
+            accepted += 1;
+            assertTrue("demand not limited", accepted < 100);
+        }
+        source.close();
+        stalled.start();
+        assertEquals(6 * accepted, stalled.text().length());
+    }
+
+    @Test
+    public void testBadSettings() throws Exception {
+        SubmissionPublisher<CharBuffer> source = new SubmissionPublisher<>();
+        Collector failed = new Collector(true);
+        connect(source, Flow.defaultBufferSize(), failed);
+        source.submit(CharBuffer.wrap("* B Beta III\n"));
+        source.close();
+        try {
+            failed.text();
+            fail("bad settings accepted");
+        } catch (ExecutionException excp) {
+            assertTrue(excp.getCause() instanceof EnigmaException);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadBacklog() {
+        new StreamProcessor(machine(), 0);
+    }
+
+}
@@ -0,0 +1,298 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static enigma.EnigmaException.*;
+
+/** The complete substitution performed by a machine (plugboard, rotors
+ *  and reflector) in each of its reachable rotor states, precomputed into
+ *  a single flat table.  A state is numbered by reading the settings of
+ *  the rotors in the pawl slots as a number in base size(), with the
+ *  leftmost of those rotors as the most significant digit.  A table may
+ *  be held on the heap or mapped from a file (see map()), which lets
+ *  every process on a host share one copy through the page cache.
+ *  @author Adrian Kwan
+ */
+class SubstitutionTable {
+
+    /** The largest number of entries a table may have. */
+    static final int MAX_ENTRIES = 1 << 24;
+
+    /** A table holding the substitutions of machine M, which must have
+     *  its rotors and plugboard in place, for every setting of its
+     *  pawl rotors.  The rotors outside the pawl slots keep their
+     *  current settings. */
+    SubstitutionTable(Machine M) {
+        _size = M.alphabet().size();
+        _numStates = numStates(M.alphabet().size(), M.numPawls());
+        if (_numStates < 0 || (long) _numStates * _size > MAX_ENTRIES) {
+            throw error("machine too large to compile");
+        }
+        int[] table = new int[_numStates * _size];
+        _array = table;
+        _table = IntBuffer.wrap(table);
+
+        int numRotors = M.numRotors();
+        int first = numRotors - M.numPawls();
+        Rotor[] rotors = M.getRotors();
+        Permutation plugboard = M.plugboard();
+        int[] posns = new int[numRotors];
+        int[] rings = new int[numRotors];
+        for (int i = 0; i < numRotors; i += 1) {
+            posns[i] = M.setting(i);
+            rings[i] = M.ring(i);
+        }
+        int last = numRotors - 1;
+        Permutation core = null;
+        for (int state = 0; state < _numStates; state += 1) {
+            int rest = state;
+            for (int i = last; i >= first; i -= 1) {
+                posns[i] = rest % _size;
+                rest /= _size;
+            }
+            if (posns[last] == 0 || core == null) {
+                core = core(rotors, posns, rings, last);
+            }
+            Permutation full =
+                core.conjugate(rotors[last].permutation()
+                               .conjugate(posns[last] - rings[last]));
+            int base = state * _size;
+            for (int c = 0; c < _size; c += 1) {
+                table[base + c] =
+                    plugboard.permute(full.permute(plugboard.permute(c)));
+            }
+        }
+    }
+
+    /** Return the substitution made by the rotors in slots 0 .. LAST-1 of
+     *  ROTORS, going in from slot LAST-1 to the reflector and back out,
+     *  with the rotors at POSNS and ring settings RINGS (each indexed by
+     *  slot).  Built by composing each rotor's permutation, shifted to
+     *  its offset, around the reflector, so that the cost is a few passes
+     *  over arrays per rotor rather than one lookup per rotor per
+     *  character. */
+    private static Permutation core(Rotor[] rotors, int[] posns,
+                                    int[] rings, int last) {
+        Permutation result =
+            rotors[0].permutation().conjugate(posns[0] - rings[0]);
+        for (int i = 1; i < last; i += 1) {
+            result = result.conjugate(rotors[i].permutation()
+                                      .conjugate(posns[i] - rings[i]));
+        }
+        return result;
+    }
+
+    /** A table of NUMSTATES states over an alphabet of SIZE characters
+     *  whose entries are TABLE. */
+    private SubstitutionTable(int size, int numStates, IntBuffer table) {
+        _size = size;
+        _numStates = numStates;
+        _array = null;
+        _table = table;
+    }
+
+    /** Return the table of machine M (as for SubstitutionTable(M)),
+     *  mapped from a file in DIRECTORY, which is first built and written
+     *  there if no process has done so already.  The file is named by a
+     *  hash of M's configuration, which it records in full, so that a
+     *  file for another configuration is never used. */
+    static SubstitutionTable map(Machine M, Path directory)
+        throws IOException {
+        int[] key = key(M);
+        long hash = 0;
+        for (int k : key) {
+            hash = (hash + k) * HASH_MULTIPLIER;
+        }
+        Path file = directory.resolve(String.format("%016x.tab", hash));
+        SubstitutionTable result = map(file, key);
+        if (result != null) {
+            return result;
+        }
+        SubstitutionTable table = new SubstitutionTable(M);
+        Path temp = Files.createTempFile(directory, "table", ".tmp");
+        try {
+            table.save(temp, key);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        result = map(file, key);
+        return result == null ? table : result;
+    }
+
+    /** Return the table in FILE if it exists and was saved with KEY,
+     *  and otherwise null. */
+    private static SubstitutionTable map(Path file, int[] key)
+        throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer data =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                .order(ByteOrder.nativeOrder());
+            int header = HEADER_SIZE + key.length * Integer.BYTES;
+            if (data.remaining() < header || data.getInt() != MAGIC
+                || data.getInt() != key.length) {
+                return null;
+            }
+            for (int k : key) {
+                if (data.getInt() != k) {
+                    return null;
+                }
+            }
+            int size = key[0];
+            int numStates = data.getInt();
+            IntBuffer table = data.slice().order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+            if (table.remaining() != (long) numStates * size) {
+                return null;
+            }
+            return new SubstitutionTable(size, numStates, table);
+        }
+    }
+
+    /** Write me to FILE, in the form read by map(), recording KEY. */
+    private void save(Path file, int[] key) throws IOException {
+        try (FileChannel channel =
+             FileChannel.open(file, StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer data =
+                ByteBuffer.allocate(BUFFER_SIZE * Integer.BYTES)
+                .order(ByteOrder.nativeOrder());
+            data.putInt(MAGIC).putInt(key.length);
+            for (int k : key) {
+                if (!data.hasRemaining()) {
+                    write(channel, data);
+                }
+                data.putInt(k);
+            }
+            data.putInt(_numStates);
+            for (int i = 0; i < _table.limit(); i += 1) {
+                if (!data.hasRemaining()) {
+                    write(channel, data);
+                }
+                data.putInt(_table.get(i));
+            }
+            write(channel, data);
+            channel.force(false);
+        }
+    }
+
+    /** Write the contents of DATA to CHANNEL and clear DATA. */
+    private static void write(FileChannel channel, ByteBuffer data)
+        throws IOException {
+        data.flip();
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        data.clear();
+    }
+
+    /** Return the configuration of machine M that determines its table:
+     *  the alphabet size and the number of slots and pawls, then for
+     *  each slot the wiring of its rotor, its ring setting and (outside
+     *  the pawl slots) its setting, and lastly the plugboard. */
+    private static int[] key(Machine M) {
+        int size = M.alphabet().size();
+        int numRotors = M.numRotors();
+        int first = numRotors - M.numPawls();
+        int[] result = new int[3 + numRotors * (size + 2) + size];
+        result[0] = size;
+        result[1] = numRotors;
+        result[2] = M.numPawls();
+        int k = 3;
+        for (int i = 0; i < numRotors; i += 1) {
+            Permutation perm = M.getRotor(i).permutation();
+            for (int c = 0; c < size; c += 1) {
+                result[k + c] = perm.permute(c);
+            }
+            result[k + size] = M.ring(i);
+            result[k + size + 1] = i < first ? M.setting(i) : 0;
+            k += size + 2;
+        }
+        for (int c = 0; c < size; c += 1) {
+            result[k + c] = M.plugboard().permute(c);
+        }
+        return result;
+    }
+
+    /** Return the number of rotor states of a machine with PAWLS pawls
+     *  over an alphabet of SIZE characters, or -1 if that number does
+     *  not fit in an int. */
+    static int numStates(int size, int pawls) {
+        long result = 1;
+        for (int i = 0; i < pawls; i += 1) {
+            result *= size;
+            if (result > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return (int) result;
+    }
+
+    /** Return true iff a machine with PAWLS pawls over an alphabet of
+     *  SIZE characters is small enough to compile. */
+    static boolean fits(int size, int pawls) {
+        int n = numStates(size, pawls);
+        return n >= 0 && (long) n * size <= MAX_ENTRIES;
+    }
+
+    /** Return the number of rotor states I cover. */
+    int numStates() {
+        return _numStates;
+    }
+
+    /** Return the size of the alphabet I map. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of bytes my entries occupy. */
+    long bytes() {
+        return (long) _table.limit() * Integer.BYTES;
+    }
+
+    /** Return the conversion of C (an index in the range 0..size()-1)
+     *  by the machine when its pawl rotors are in STATE. */
+    int convert(int state, int c) {
+        int i = state * _size + c;
+        return _array != null ? _array[i] : _table.get(i);
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of rotor states. */
+    private final int _numStates;
+
+    /** Substitution for state S of character C is at S * _size + C. */
+    private final IntBuffer _table;
+
+    /** The array underlying _table, if it is on the heap, and otherwise
+     *  null.  Indexing the array directly is faster than going through
+     *  _table. */
+    private final int[] _array;
+
+    /** First word of a table file. */
+    private static final int MAGIC = 0x456e5431;
+
+    /** Bytes in a table file before the key: the magic number and the
+     *  length of the key, plus the number of states that follows it. */
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    /** Number of entries written at a time by save(). */
+    private static final int BUFFER_SIZE = 1 << 14;
+
+    /** Multiplier of the hash naming a table file. */
+    private static final long HASH_MULTIPLIER = 0x9e3779b97f4a7c15L;
+}
@@ -0,0 +1,125 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the SubstitutionTable class.
+ *  @author Adrian Kwan
+ */
+public class SubstitutionTableTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Directory of the mapped tables of a test. */
+    private Path _dir;
+
+    /** Create _dir. */
+    @Before
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("tables");
+    }
+
+    /** Remove _dir and the tables in it. */
+    @After
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(_dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(_dir);
+    }
+
+    /** Return a five-slot machine holding C Gamma I VIII VI at BRUH with
+     *  rings RING and plugboard (AZ) (QT). */
+    private Machine machine(String ring) {
+        Machine mach =
+            navalMachine(3, "BRUH", "C", "Gamma", "I", "VIII", "VI");
+        mach.setRing(ring);
+        mach.setPlugboard(new Permutation("(AZ) (QT)", UPPER));
+        return mach;
+    }
+
+    /** Assert that tables EXPECTED and TABLE make the same
+     *  substitutions. */
+    private void checkTable(SubstitutionTable expected,
+                            SubstitutionTable table) {
+        assertEquals(expected.size(), table.size());
+        assertEquals(expected.numStates(), table.numStates());
+        assertEquals(expected.bytes(), table.bytes());
+        for (int s = 0; s < expected.numStates(); s += 1) {
+            for (int c = 0; c < expected.size(); c += 1) {
+                assertEquals(expected.convert(s, c), table.convert(s, c));
+            }
+        }
+    }
+
+    /** Return the number of files in _dir. */
+    private int numFiles() {
+        return _dir.toFile().list().length;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testTable() {
+        SubstitutionTable table = new SubstitutionTable(machine("ABCD"));
+        assertEquals(26, table.size());
+        assertEquals(26 * 26 * 26, table.numStates());
+        assertEquals(26L * 26 * 26 * 26 * 4, table.bytes());
+    }
+
+    @Test
+    public void testMap() throws IOException {
+        Machine mach = machine("ABCD");
+        SubstitutionTable expected = new SubstitutionTable(mach);
+        checkTable(expected, SubstitutionTable.map(mach, _dir));
+        assertEquals(1, numFiles());
+        checkTable(expected, SubstitutionTable.map(mach, _dir));
+        assertEquals(1, numFiles());
+        Machine other = machine("ABCE");
+        checkTable(new SubstitutionTable(other),
+                   SubstitutionTable.map(other, _dir));
+        assertEquals(2, numFiles());
+    }
+
+    @Test
+    public void testDamagedFile() throws IOException {
+        Machine mach = machine("ABCD");
+        SubstitutionTable.map(mach, _dir);
+        Path file = _dir.resolve(_dir.toFile().list()[0]);
+        Files.write(file, new byte[] { 1, 2, 3 });
+        checkTable(new SubstitutionTable(mach),
+                   SubstitutionTable.map(mach, _dir));
+        assertEquals(1, numFiles());
+    }
+
+    @Test
+    public void testMappedMachines() throws IOException {
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        Machine mach = machine("ABCD");
+        String expected = mach.copy().convert(msg);
+        for (int i = 0; i < 2; i += 1) {
+            Machine mapped = mach.copy();
+            mapped.setCompiled(true);
+            mapped.setTableCache(new TableCache(1 << 30, _dir));
+            assertEquals(expected, mapped.convert(msg));
+        }
+        assertEquals(1, numFiles());
+    }
+
+}
@@ -0,0 +1,177 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import static enigma.EnigmaException.*;
+
+/** A cache of the substitution tables of compiled machines, keyed by
+ *  everything a table depends on: the rotors in each slot, their ring
+ *  settings, the settings of the rotors outside the pawl slots, and the
+ *  plugboard.  Machines that share a key (typically messages sent with
+ *  the same daily key at different starting positions) share one table
+ *  instead of each building its own.  The cache holds tables up to a
+ *  fixed number of bytes, discarding the least recently used tables to
+ *  make room for new ones.  It may be used from any number of threads.
+ *  @author Adrian Kwan
+ */
+class TableCache {
+
+    /** A cache holding tables of at most CAPACITY bytes in all. */
+    TableCache(long capacity) {
+        this(capacity, null);
+    }
+
+    /** A cache holding tables of at most CAPACITY bytes in all, which
+     *  maps the tables it needs from files in DIRECTORY, if not null,
+     *  rather than holding them on the heap (see SubstitutionTable.map).
+     *  Mapped tables count against CAPACITY in the same way. */
+    TableCache(long capacity, Path directory) {
+        _capacity = capacity;
+        _directory = directory;
+        _tables = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /** Return the table for the current configuration of machine M,
+     *  building it if it is not cached.  A table larger than my capacity
+     *  is built but not kept. */
+    SubstitutionTable get(Machine M) {
+        Key key = new Key(M);
+        synchronized (this) {
+            SubstitutionTable table = _tables.get(key);
+            if (table != null) {
+                _hits += 1;
+                return table;
+            }
+            _misses += 1;
+        }
+        SubstitutionTable table = build(M);
+        synchronized (this) {
+            SubstitutionTable other = _tables.get(key);
+            if (other != null) {
+                return other;
+            }
+            if (table.bytes() <= _capacity) {
+                _tables.put(key, table);
+                _used += table.bytes();
+                Iterator<SubstitutionTable> eldest =
+                    _tables.values().iterator();
+                while (_used > _capacity) {
+                    _used -= eldest.next().bytes();
+                    eldest.remove();
+                }
+            }
+        }
+        return table;
+    }
+
+    /** Return a new table for the current configuration of M. */
+    private SubstitutionTable build(Machine M) {
+        if (_directory == null) {
+            return new SubstitutionTable(M);
+        }
+        try {
+            return SubstitutionTable.map(M, _directory);
+        } catch (IOException excp) {
+            throw error("could not map table in %s: %s", _directory,
+                        excp.getMessage());
+        }
+    }
+
+    /** Return the number of lookups that found a cached table. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that had to build a table. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Return the total size in bytes of the tables I hold. */
+    synchronized long used() {
+        return _used;
+    }
+
+    /** Return the number of tables I hold. */
+    synchronized int count() {
+        return _tables.size();
+    }
+
+    /** The configuration of a machine that determines its table. */
+    private static class Key {
+
+        /** The key of the current configuration of M. */
+        Key(Machine M) {
+            int numRotors = M.numRotors();
+            int first = numRotors - M.numPawls();
+            _rotors = M.getRotors().clone();
+            _settings = new int[2 * numRotors];
+            for (int i = 0; i < numRotors; i += 1) {
+                _settings[i] = M.ring(i);
+                if (i < first) {
+                    _settings[numRotors + i] = M.setting(i);
+                }
+            }
+            int size = M.alphabet().size();
+            _plugboard = new int[size];
+            for (int c = 0; c < size; c += 1) {
+                _plugboard[c] = M.plugboard().permute(c);
+            }
+            _hash = (Arrays.hashCode(_rotors) * 31
+                     + Arrays.hashCode(_settings)) * 31
+                + Arrays.hashCode(_plugboard);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return _hash == other._hash
+                && Arrays.equals(_rotors, other._rotors)
+                && Arrays.equals(_settings, other._settings)
+                && Arrays.equals(_plugboard, other._plugboard);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        /** The rotor in each slot. */
+        private final Rotor[] _rotors;
+
+        /** The ring settings of every slot, followed by the settings of
+         *  the slots outside the pawl slots (0 for pawl slots). */
+        private final int[] _settings;
+
+        /** The plugboard, as the image of each character. */
+        private final int[] _plugboard;
+
+        /** My hash code. */
+        private final int _hash;
+    }
+
+    /** Largest total size of my tables, in bytes. */
+    private final long _capacity;
+
+    /** Directory of mapped tables, or null. */
+    private final Path _directory;
+
+    /** My tables, from least to most recently used. */
+    private final LinkedHashMap<Key, SubstitutionTable> _tables;
+
+    /** Total size of _tables, in bytes. */
+    private long _used;
+
+    /** Number of lookups that found a table. */
+    private long _hits;
+
+    /** Number of lookups that built a table. */
+    private long _misses;
+}
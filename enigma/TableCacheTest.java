@@ -0,0 +1,94 @@
+package enigma;
+
+import java.util.HashMap;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the TableCache class.
+ *  @author Adrian Kwan
+ */
+public class TableCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A message to convert. */
+    private static final String MSG =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+
+    /** Size in bytes of the table of a three-slot machine. */
+    private static final long TABLE_SIZE = 26 * 26 * 26 * 4;
+
+    /** The rotors of all my machines, which may share tables only if
+     *  they share their rotors. */
+    private final HashMap<String, Rotor> _rotors = navalRotors();
+
+    /** Return a three-slot machine holding C II I at SETTING with rings
+     *  RING and plugboard (AZ) (QT). */
+    private Machine machine(String setting, String ring) {
+        Machine mach = new Machine(UPPER, 3, 2, _rotors.values());
+        mach.insertRotors(new String[] { "C", "II", "I" });
+        mach.setRotors(setting);
+        mach.setRing(ring);
+        mach.setPlugboard(new Permutation("(AZ) (QT)", UPPER));
+        return mach;
+    }
+
+    /** Assert that a copy of MACH compiled with tables from CACHE
+     *  converts MSG as MACH does. */
+    private void checkCompiled(Machine mach, TableCache cache) {
+        String expected = mach.copy().convert(MSG);
+        mach.setCompiled(true);
+        mach.setTableCache(cache);
+        assertEquals(expected, mach.convert(MSG));
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSharedKey() {
+        TableCache cache = new TableCache(100000);
+        checkCompiled(machine("AB", "AA"), cache);
+        checkCompiled(machine("QE", "AA"), cache);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        checkCompiled(machine("QE", "AC"), cache);
+        assertEquals(2, cache.misses());
+        assertEquals(1, cache.count());
+        assertEquals(TABLE_SIZE, cache.used());
+    }
+
+    @Test
+    public void testLeastRecentlyUsed() {
+        TableCache cache = new TableCache(2 * TABLE_SIZE);
+        checkCompiled(machine("AB", "AA"), cache);
+        checkCompiled(machine("AB", "AC"), cache);
+        checkCompiled(machine("AB", "AA"), cache);
+        checkCompiled(machine("AB", "AD"), cache);
+        assertEquals(2, cache.count());
+        assertEquals(1, cache.hits());
+        checkCompiled(machine("AB", "AA"), cache);
+        assertEquals(2, cache.hits());
+        checkCompiled(machine("AB", "AC"), cache);
+        assertEquals(2, cache.hits());
+        assertEquals(4, cache.misses());
+    }
+
+    @Test
+    public void testOversizedTable() {
+        TableCache cache = new TableCache(TABLE_SIZE - 1);
+        checkCompiled(machine("AB", "AA"), cache);
+        checkCompiled(machine("AB", "AA"), cache);
+        assertEquals(0, cache.count());
+        assertEquals(0, cache.used());
+        assertEquals(2, cache.misses());
+    }
+
+}
@@ -126,4 +126,46 @@ class TestUtils {
         NAVALZ_MAP.put("Gamma", "EGTPLBOVFSINCUJZDXMRQAYWHK");
     }
 
+    /** The notches of the naval rotors that move. */
+    static final HashMap<String, String> NAVAL_NOTCHES = new HashMap<>();
+    static {
+        NAVAL_NOTCHES.put("I", "Q");
+        NAVAL_NOTCHES.put("II", "E");
+        NAVAL_NOTCHES.put("III", "V");
+        NAVAL_NOTCHES.put("IV", "J");
+        NAVAL_NOTCHES.put("V", "Z");
+        NAVAL_NOTCHES.put("VI", "ZM");
+        NAVAL_NOTCHES.put("VII", "ZM");
+        NAVAL_NOTCHES.put("VIII", "ZM");
+    }
+
+    /** Return new naval rotors over UPPER, indexed by name.  B and C are
+     *  reflectors and Beta and Gamma are fixed. */
+    static HashMap<String, Rotor> navalRotors() {
+        HashMap<String, Rotor> rotors = new HashMap<>();
+        for (String name : NAVALA.keySet()) {
+            Permutation perm = new Permutation(NAVALA.get(name), UPPER);
+            if (name.equals("B") || name.equals("C")) {
+                rotors.put(name, new Reflector(name, perm));
+            } else if (NAVAL_NOTCHES.containsKey(name)) {
+                rotors.put(name, new MovingRotor(name, perm,
+                                                 NAVAL_NOTCHES.get(name)));
+            } else {
+                rotors.put(name, new FixedRotor(name, perm));
+            }
+        }
+        return rotors;
+    }
+
+    /** Return a machine with PAWLS pawls and all the naval rotors, with
+     *  the rotors named ROTORS inserted and set to SETTING. */
+    static Machine navalMachine(int pawls, String setting,
+                                String... rotors) {
+        Machine mach =
+            new Machine(UPPER, rotors.length, pawls, navalRotors().values());
+        mach.insertRotors(rotors);
+        mach.setRotors(setting);
+        return mach;
+    }
+
 }
@@ -0,0 +1,23 @@
+package enigma;
+
+/** A receiver of the details of each character converted by a machine,
+ *  attached with Machine.setTraceListener.  A machine with no listener
+ *  does no tracing work at all.
+ *  @author Adrian Kwan
+ */
+interface TraceListener {
+
+    /** Record the conversion of one character.  SETTINGS holds the
+     *  settings of the rotors in slots 1 and up after advancing for this
+     *  character.  PATH holds, as indices into the alphabet, the input
+     *  character, its image under the plugboard, the contact through
+     *  which the signal leaves each rotor from the fast rotor to the
+     *  reflector and back again, and the output character.  Both arrays
+     *  are reused for the next character, so must not be kept. */
+    void trace(int[] settings, int[] path);
+
+    /** Write out anything recorded but not yet written.  Called when
+     *  there is a pause in tracing. */
+    default void flush() {
+    }
+}
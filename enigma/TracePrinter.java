@@ -0,0 +1,59 @@
+package enigma;
+
+import java.io.PrintStream;
+
+/** A trace listener that prints one line for each character converted,
+ *  giving the rotor settings and the letters along the signal path, as
+ *  in
+ *          [AXLF] H -> Z -> L -> F -> W -> S -> Z -> T -> Y -> X -> X -> S
+ *  @author Adrian Kwan
+ */
+class TracePrinter implements TraceListener {
+
+    /** A printer writing traces of a machine over ALPHABET to OUT. */
+    TracePrinter(Alphabet alphabet, PrintStream out) {
+        _alphabet = alphabet;
+        _out = out;
+        _buffer = new StringBuilder();
+    }
+
+    @Override
+    public void trace(int[] settings, int[] path) {
+        _buffer.append('[');
+        for (int posn : settings) {
+            _buffer.appendCodePoint(_alphabet.codePoint(posn));
+        }
+        _buffer.append("] ");
+        for (int k = 0; k < path.length; k += 1) {
+            if (k > 0) {
+                _buffer.append(" -> ");
+            }
+            _buffer.appendCodePoint(_alphabet.codePoint(path[k]));
+        }
+        _buffer.append(System.lineSeparator());
+        if (_buffer.length() >= BUFFER_SIZE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (_buffer.length() > 0) {
+            _out.append(_buffer);
+            _buffer.setLength(0);
+        }
+        _out.flush();
+    }
+
+    /** Number of characters of output collected before writing. */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    /** Alphabet of the traced machine. */
+    private final Alphabet _alphabet;
+
+    /** Destination of the traces. */
+    private final PrintStream _out;
+
+    /** Lines not yet written to _out. */
+    private final StringBuilder _buffer;
+}
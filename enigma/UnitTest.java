@@ -16,7 +16,23 @@ public class UnitTest {
         }
         System.exit(textui.runClasses(PermutationTest.class,
                 MovingRotorTest.class,
-                MachineTest.class));
+                MachineTest.class,
+                MainTest.class,
+                KeySearchTest.class,
+                BombeTest.class,
+                HillClimbTest.class,
+                NgramModelTest.class,
+                TableCacheTest.class,
+                SubstitutionTableTest.class,
+                BatchMachineTest.class,
+                ConfigSnapshotTest.class,
+                PipelinedReaderTest.class,
+                PipelinedWriterTest.class,
+                PeriodAnalyzerTest.class,
+                StreamProcessorTest.class,
+                EnigmaServerTest.class,
+                MessageProcessorTest.class, MappedReaderTest.class,
+                MappedWriterTest.class));
     }
 
 }